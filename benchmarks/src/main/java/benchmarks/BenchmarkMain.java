@@ -0,0 +1,45 @@
+package benchmarks;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+/**
+ * BenchmarkMain runs the JMH benchmarks with the GC profiler always on, so
+ * every result comes with its allocation rate and GC count next to the time.
+ * It takes the same options as the JMH command line, e.g. -p to narrow the
+ * parameters, -f for the number of forks or -rf csv for a result file.
+ *
+ * Execution: java -jar target/benchmarks.jar [JMH options]
+ * Usage: Without options every benchmark is run for every parameter, which
+ *        takes hours; -h prints the JMH options and -lp lists the benchmarks
+ *        with their parameters.
+ */
+public final class BenchmarkMain {
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions cli = new CommandLineOptions(args);
+    if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+        || cli.shouldListResultFormats()) {
+      Main.main(args);
+      return;
+    }
+
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(cli);
+    boolean gcProfiled = false;
+    for (ProfilerConfig profiler : cli.getProfilers()) {
+      gcProfiled |= profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName());
+    }
+    if (!gcProfiled) {
+      options.addProfiler(GCProfiler.class);
+    }
+    new Runner(options.build()).run();
+  }
+}
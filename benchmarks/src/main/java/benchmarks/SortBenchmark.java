@@ -0,0 +1,227 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SortBenchmark measures every algorithm of SortingAlgs and both columnsort
+ * engines on the same inputs, for each input size and distribution.
+ *
+ * Each invocation copies the input into a work array and sorts the copy, so
+ * every score includes one copy of n ints; the copy is the same for every
+ * algorithm and small next to the sort. The inputs are generated once per
+ * trial from a fixed seed, so every algorithm and fork sees the same data.
+ * At the end of each trial the last sorted copy is checked against
+ * Arrays.sort and the trial fails if they differ.
+ *
+ * The columnsort sources are in the default package, which cannot be
+ * imported from here, so the algorithms are looked up by name once per trial:
+ * - the SortingAlgs algorithms through SortingAlgs.algorithms()
+ * - "Columnsort (list)" through Prog3.sort, the linked list engine
+ * - "Columnsort (flat)" through Columnsort.sort, the flat matrix engine
+ *
+ * Some rows fail by design on some inputs, e.g. the Lomuto quicksorts overflow
+ * the stack on large sorted inputs; JMH reports the failure and goes on to
+ * the next row.
+ *
+ * Example: java -jar target/benchmarks.jar SortBenchmark -p n=100000 -p algorithm="Heap Sort,Columnsort (flat)"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+@State(Scope.Thread)
+public class SortBenchmark {
+
+  /** Name of the Prog3 linked list engine */
+  static final String COLUMNSORT_LIST = "Columnsort (list)";
+
+  /** Name of the flat Columnsort engine */
+  static final String COLUMNSORT_FLAT = "Columnsort (flat)";
+
+  /** Seed of every generated input */
+  private static final long SEED = 345;
+
+  /**
+   * Input distributions.
+   */
+  public enum Distribution {
+    /** Uniform over every int */
+    RANDOM,
+    /** Ascending */
+    SORTED,
+    /** Descending */
+    REVERSED,
+    /** Ascending, with 1% of the elements swapped with a random other one */
+    NEARLY_SORTED,
+    /** Uniform over [0, 16) */
+    DUPLICATES,
+    /** Uniform over the negative ints */
+    NEGATIVES;
+
+    int[] generate(int n, Random random) {
+      int[] array = new int[n];
+      switch (this) {
+        case RANDOM:
+          for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt();
+          }
+          break;
+        case SORTED:
+        case NEARLY_SORTED:
+          for (int i = 0; i < n; i++) {
+            array[i] = i;
+          }
+          if (this == NEARLY_SORTED) {
+            for (int k = 0; k < n / 100; k++) {
+              int i = random.nextInt(n);
+              int j = random.nextInt(n);
+              int temp = array[i];
+              array[i] = array[j];
+              array[j] = temp;
+            }
+          }
+          break;
+        case REVERSED:
+          for (int i = 0; i < n; i++) {
+            array[i] = n - i;
+          }
+          break;
+        case DUPLICATES:
+          for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt(16);
+          }
+          break;
+        case NEGATIVES:
+          for (int i = 0; i < n; i++) {
+            array[i] = -1 - random.nextInt(Integer.MAX_VALUE);
+          }
+          break;
+        default:
+          throw new AssertionError(this);
+      }
+      return array;
+    }
+  }
+
+  @Param({ "Insertion Sort", "Dual-Pivot QuickSort", "Parallel Sort", "Merge Sort",
+      "Merge Sort with Insertion Sort", "Radix Sort", "Bubble Sort", "Selection Sort", "Quick Sort",
+      "Merge Sort with Selection Sort", "Merge Sort with Bubble Sort", "Quick Sort with Insertion Sort",
+      "Quick Sort with Selection Sort", "Dual-Pivot QuickSort (Custom)", "Introspective Sort",
+      "Three-Way Quick Sort", "Median of Three Quick Sort", "Heap Sort", "Adaptive Sort", "TimSort", "Bucket Sort",
+      "Bitonic Sort", "Parallel Merge Sort", "Parallel Three-Way Quick Sort", "Parallel Radix Sort",
+      "Parallel Bucket Sort", "Parallel Bitonic Sort", COLUMNSORT_LIST, COLUMNSORT_FLAT })
+  public String algorithm;
+
+  @Param({ "1000", "100000" })
+  public int n;
+
+  @Param
+  public Distribution distribution;
+
+  private int[] input;
+  private int[] work;
+  private Consumer<int[]> sorter;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ReflectiveOperationException {
+    input = distribution.generate(n, new Random(SEED));
+    work = new int[n];
+    sorter = lookUp(algorithm);
+  }
+
+  @Benchmark
+  public int[] sort() {
+    System.arraycopy(input, 0, work, 0, n);
+    sorter.accept(work);
+    return work;
+  }
+
+  @TearDown(Level.Trial)
+  public void checkSorted() {
+    int[] expected = input.clone();
+    Arrays.sort(expected);
+    if (!Arrays.equals(expected, work)) {
+      throw new IllegalStateException(algorithm + " did not sort " + distribution + " input of " + n + " elements");
+    }
+  }
+
+  /**
+   * Looks up an algorithm by its name in the benchmark table.
+   *
+   * @param name the name of the algorithm
+   * @return a function sorting an array in place
+   * @throws ReflectiveOperationException if the columnsort classes are missing
+   * @throws IllegalArgumentException     if there is no algorithm with the name
+   */
+  @SuppressWarnings("unchecked")
+  static Consumer<int[]> lookUp(String name) throws ReflectiveOperationException {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    if (name.equals(COLUMNSORT_LIST)) {
+      // Prog3.sort(int[], String...) is package-private
+      Class<?> prog3 = Class.forName("Prog3");
+      MethodHandle sort = MethodHandles.privateLookupIn(prog3, lookup)
+          .findStatic(prog3, "sort", MethodType.methodType(void.class, int[].class, String[].class));
+      String[] options = new String[0];
+      return array -> {
+        try {
+          sort.invokeExact(array, options);
+        } catch (Throwable e) {
+          throw unchecked(e);
+        }
+      };
+    }
+    if (name.equals(COLUMNSORT_FLAT)) {
+      Class<?> columnsort = Class.forName("Columnsort");
+      MethodHandle sort = lookup.findVirtual(columnsort, "sort", MethodType.methodType(void.class, int[].class))
+          .bindTo(columnsort.getConstructor().newInstance());
+      return array -> {
+        try {
+          sort.invokeExact(array);
+        } catch (Throwable e) {
+          throw unchecked(e);
+        }
+      };
+    }
+
+    Map<String, Consumer<int[]>> algorithms = (Map<String, Consumer<int[]>>) Class.forName("SortingAlgs")
+        .getMethod("algorithms").invoke(null);
+    Consumer<int[]> algorithm = algorithms.get(name);
+    if (algorithm == null) {
+      throw new IllegalArgumentException("Unknown algorithm: " + name + ", expected one of " + algorithms.keySet());
+    }
+    return algorithm;
+  }
+
+  /**
+   * Rethrows an unchecked exception or error from a method handle as is, and
+   * wraps anything else.
+   */
+  private static RuntimeException unchecked(Throwable e) {
+    if (e instanceof Error) {
+      throw (Error) e;
+    }
+    return e instanceof RuntimeException ? (RuntimeException) e : new IllegalStateException(e);
+  }
+}
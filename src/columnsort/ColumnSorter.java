@@ -0,0 +1,124 @@
+/**
+ * A ColumnSorter sorts one column of the columnsort matrix. Columnsort only
+ * requires that each column ends up in ascending order, so any sorting
+ * algorithm can be plugged in. The built-in kernels reuse the implementations
+ * in SortingAlgs:
+ * - INSERTION: insertion sort, best for very short or nearly sorted columns
+ * - DUAL_PIVOT_QUICKSORT: SortingAlgs.dualPivotQuickSort2
+ * - RADIX: SortingAlgs.radixSort, a byte-wise radix sort using a scratch
+ * array from the ScratchPool of the calling thread
+ * - HEAP: SortingAlgs.heapSort
+ * - MERGE: SortingAlgs.mergeSort, with its buffer from the ScratchPool
+ * - ADAPTIVE: chooses one of the above by column length (the default)
+ *
+ * An optional SIMD kernel built on the Vector API is available through
+ * vector(), see vector/VectorColumnSorter.java.
+ *
+ * Implementations must be safe to call from several threads at once on
+ * disjoint ranges, since columns may be sorted in parallel.
+ */
+@FunctionalInterface
+public interface ColumnSorter {
+
+  /** Columns up to this length are insertion sorted by ADAPTIVE */
+  int INSERTION_THRESHOLD = 32;
+
+  /** Columns at least this long are radix sorted by ADAPTIVE */
+  int RADIX_THRESHOLD = 1 << 16;
+
+  ColumnSorter INSERTION = SortingAlgs::insertionSort;
+
+  ColumnSorter DUAL_PIVOT_QUICKSORT = SortingAlgs::dualPivotQuickSort2;
+
+  ColumnSorter RADIX = (array, from, to) -> {
+    ScratchPool pool = ScratchPool.local();
+    int[] scratch = pool.acquire(to - from);
+    try {
+      SortingAlgs.radixSort(array, from, to, scratch);
+    } finally {
+      pool.release(scratch);
+    }
+  };
+
+  ColumnSorter HEAP = SortingAlgs::heapSort;
+
+  ColumnSorter MERGE = (array, from, to) -> {
+    ScratchPool pool = ScratchPool.local();
+    int[] buffer = pool.acquire(to - from);
+    try {
+      SortingAlgs.mergeSort(array, from, to, buffer);
+    } finally {
+      pool.release(buffer);
+    }
+  };
+
+  ColumnSorter ADAPTIVE = (array, from, to) -> {
+    int length = to - from;
+    if (length <= INSERTION_THRESHOLD) {
+      INSERTION.sort(array, from, to);
+    } else if (length < RADIX_THRESHOLD) {
+      DUAL_PIVOT_QUICKSORT.sort(array, from, to);
+    } else {
+      RADIX.sort(array, from, to);
+    }
+  };
+
+  /**
+   * Sorts the range [from, to) of the array in ascending order.
+   *
+   * @param array the array holding the column
+   * @param from  index of the first element of the column, inclusive
+   * @param to    index of the last element of the column, exclusive
+   */
+  void sort(int[] array, int from, int to);
+
+  /**
+   * Looks up a built-in kernel by name.
+   *
+   * @param name one of insertion, quicksort, radix, heap, merge, adaptive or
+   *             vector
+   * @return the kernel with the given name
+   * @throws IllegalArgumentException if there is no kernel with that name
+   */
+  static ColumnSorter forName(String name) {
+    switch (name) {
+      case "insertion":
+        return INSERTION;
+      case "quicksort":
+        return DUAL_PIVOT_QUICKSORT;
+      case "radix":
+        return RADIX;
+      case "heap":
+        return HEAP;
+      case "merge":
+        return MERGE;
+      case "adaptive":
+        return ADAPTIVE;
+      case "vector":
+        return vector();
+      default:
+        throw new IllegalArgumentException("Unknown column sorter: " + name);
+    }
+  }
+
+  /**
+   * Returns the SIMD kernel in VectorColumnSorter if it can be used, or
+   * ADAPTIVE otherwise. The kernel is looked up by name, so this compiles and
+   * runs without the jdk.incubator.vector module; it is only used when its
+   * class has been compiled, the JVM was started with --add-modules
+   * jdk.incubator.vector, and the CPU has vectors of at least 4 ints.
+   *
+   * @return the vector kernel, or the adaptive fallback
+   */
+  static ColumnSorter vector() {
+    try {
+      Class<?> type = Class.forName("VectorColumnSorter");
+      if ((Boolean) type.getMethod("isSupported").invoke(null)) {
+        return (ColumnSorter) type.getField("INSTANCE").get(null);
+      }
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // Not compiled, or the incubator module is not available
+    }
+    return ADAPTIVE;
+  }
+}
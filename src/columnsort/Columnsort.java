@@ -0,0 +1,153 @@
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Columnsort is a reusable, thread-safe columnsort for int arrays. Unlike
+ * Prog3, which keeps the input and the matrix dimensions in static fields, an
+ * instance holds only immutable configuration:
+ * - the DimensionTable used to pick r and s, shared by every instance by
+ * default so the table file is opened once per JVM
+ * - the ColumnSorter kernel used to sort each column
+ * - the pool used to sort the columns of large inputs, or null
+ *
+ * Each call draws its matrix and scratch array from a ScratchPool and returns
+ * them when it is done, so a thread that sorts many similar-sized inputs stops
+ * allocating once the pool holds arrays of their size. By default the pool of
+ * the calling thread is used, which keeps at most 64 MiB; a pool with a larger
+ * limit can also be passed explicitly for bigger inputs. Any number
+ * of threads may call sort on the same instance at once, and a nested call on
+ * the same thread (e.g. from a task stolen by a pool worker while it waits)
+ * simply acquires different arrays.
+ *
+ * The sort follows the flat engine of Prog3: the first r * s elements form the
+ * matrix (see FlatColumnsort), and the rest form the tail overflow partition,
+ * which is sorted separately and merged with the sorted matrix.
+ *
+ * Example:
+ * Columnsort columnsort = new Columnsort();
+ * columnsort.sort(array);
+ */
+public final class Columnsort {
+
+  /** Minimum input size for which the full columnsort algorithm is used */
+  public static final int MIN_SIZE = 8;
+
+  /** Minimum input size for which the columns are sorted on the pool */
+  public static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  private final DimensionTable table;
+  private final ColumnSorter sorter;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a serial columnsort with the adaptive column kernel and the shared
+   * dimension table.
+   *
+   * @throws java.io.UncheckedIOException if the shared table cannot be loaded
+   */
+  public Columnsort() {
+    this(ColumnSorter.ADAPTIVE, null);
+  }
+
+  /**
+   * Creates a columnsort with the shared dimension table.
+   *
+   * @param sorter the kernel used to sort each column
+   * @param pool   pool used to sort the columns of large inputs, or null to
+   *               sort serially
+   * @throws java.io.UncheckedIOException if the shared table cannot be loaded
+   */
+  public Columnsort(ColumnSorter sorter, ForkJoinPool pool) {
+    this(DimensionTable.shared(), sorter, pool);
+  }
+
+  /**
+   * Creates a columnsort.
+   *
+   * @param table  the table used to pick the matrix dimensions
+   * @param sorter the kernel used to sort each column
+   * @param pool   pool used to sort the columns of large inputs, or null to
+   *               sort serially
+   */
+  public Columnsort(DimensionTable table, ColumnSorter sorter, ForkJoinPool pool) {
+    this.table = Objects.requireNonNull(table, "table");
+    this.sorter = Objects.requireNonNull(sorter, "sorter");
+    this.pool = pool;
+  }
+
+  /**
+   * Sorts the array in ascending order.
+   *
+   * @param array the array to sort
+   */
+  public void sort(int[] array) {
+    sort(array, 0, array.length);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array in ascending order.
+   *
+   * @param array the array holding the range
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   * @throws IndexOutOfBoundsException if the range is out of bounds
+   */
+  public void sort(int[] array, int from, int to) {
+    sort(array, from, to, ScratchPool.local());
+  }
+
+  /**
+   * Sorts the range [from, to) of the array in ascending order, drawing the
+   * matrix and scratch array from the given pool.
+   *
+   * @param array   the array holding the range
+   * @param from    index of the first element to sort, inclusive
+   * @param to      index of the last element to sort, exclusive
+   * @param scratch the pool to take buffers from and return them to, which
+   *                must not be used by another thread during the call
+   * @throws IndexOutOfBoundsException if the range is out of bounds
+   */
+  public void sort(int[] array, int from, int to, ScratchPool scratch) {
+    Objects.checkFromToIndex(from, to, array.length);
+    int size = to - from;
+    if (size < MIN_SIZE) {
+      sorter.sort(array, from, to);
+      return;
+    }
+
+    DimensionPlanner.Plan plan = table.plan(size);
+    int matrixSize = plan.matrixSize();
+    int[] matrix = scratch.acquire(matrixSize);
+    int[] buffer = scratch.acquire(matrixSize);
+    try {
+      System.arraycopy(array, from, matrix, 0, matrixSize);
+      FlatColumnsort.columnsort(matrix, buffer, plan.rows, plan.cols, sorter,
+          size >= PARALLEL_THRESHOLD ? pool : null);
+
+      // Sort the tail overflow partition and merge it with the sorted matrix
+      int tailStart = from + matrixSize;
+      sorter.sort(array, tailStart, to);
+      merge(matrix, matrixSize, array, from, tailStart, to);
+    } finally {
+      scratch.release(buffer);
+      scratch.release(matrix);
+    }
+  }
+
+  /**
+   * Merges the sorted matrix with the sorted tail [tailStart, to) of the array
+   * into [from, to). Every write position trails the unread part of the tail,
+   * so this can be done in place.
+   */
+  private static void merge(int[] matrix, int matrixSize, int[] array, int from, int tailStart, int to) {
+    int i = from;
+    int j = 0;
+    int k = tailStart;
+    while (j < matrixSize && k < to) {
+      array[i++] = matrix[j] <= array[k] ? matrix[j++] : array[k++];
+    }
+
+    // Whatever is left of the tail is already in place
+    System.arraycopy(matrix, j, array, i, matrixSize - j);
+  }
+}
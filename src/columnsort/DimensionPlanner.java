@@ -0,0 +1,143 @@
+/**
+ * DimensionPlanner computes the matrix dimensions (r rows by s columns) used by
+ * columnsort for an input of any size, without a precomputed lookup table.
+ *
+ * Every plan satisfies the prerequisites of the algorithm:
+ * 1. r >= 2(s - 1)^2
+ * 2. s divides r
+ * 3. r is even
+ *
+ * Among the valid shapes the planner picks the one with the most columns,
+ * since shorter columns are cheaper to sort and more likely to stay cache
+ * resident, as long as it wastes at most sqrt(n) elements. This keeps the
+ * wasted work negligible next to the n log r cost of the column sorts.
+ *
+ * Two kinds of plan are offered. A padded plan covers the whole input with a
+ * matrix of at least n elements, the rest being padding. A truncated plan fits
+ * a matrix of at most n elements and leaves the rest as a tail overflow
+ * partition to be sorted and merged separately, as Prog3 does.
+ */
+public final class DimensionPlanner {
+
+  /** Largest matrix that can be backed by a single int array */
+  private static final long MAX_MATRIX_SIZE = Integer.MAX_VALUE - 8;
+
+  private DimensionPlanner() {
+  }
+
+  /**
+   * Immutable matrix dimensions for an input of a given size.
+   */
+  public static final class Plan {
+    /** Number of elements in the input */
+    public final int size;
+
+    /** Number of rows in the matrix */
+    public final int rows;
+
+    /** Number of columns in the matrix */
+    public final int cols;
+
+    Plan(int size, int rows, int cols) {
+      this.size = size;
+      this.rows = rows;
+      this.cols = cols;
+    }
+
+    /** Returns the number of elements in the matrix */
+    public int matrixSize() {
+      return rows * cols;
+    }
+
+    /** Returns the number of padding elements needed to fill the matrix */
+    public int padding() {
+      return Math.max(0, matrixSize() - size);
+    }
+
+    /** Returns the number of input elements that do not fit in the matrix */
+    public int remainder() {
+      return Math.max(0, size - matrixSize());
+    }
+
+    @Override
+    public String toString() {
+      return "n = " + size + ", r = " + rows + ", s = " + cols;
+    }
+  }
+
+  /**
+   * Plans a matrix of at least n elements for the input.
+   *
+   * @param n the number of elements to sort
+   * @return the padded plan
+   */
+  public static Plan plan(int n) {
+    return plan(n, (int) Math.sqrt(n), true);
+  }
+
+  /**
+   * Plans a matrix of at most n elements for the input.
+   *
+   * @param n the number of elements to sort
+   * @return the truncated plan
+   */
+  public static Plan planWithin(int n) {
+    return plan(n, (int) Math.sqrt(n), false);
+  }
+
+  /**
+   * Plans the matrix for the input by trying every valid number of columns.
+   *
+   * @param n        the number of elements to sort
+   * @param maxWaste the largest acceptable number of padding (or overflow)
+   *                 elements
+   * @param padded   whether the matrix must cover the whole input (true) or
+   *                 fit within it (false)
+   * @return the plan with the most columns that wastes at most maxWaste
+   *         elements, or the least wasteful plan if there is none
+   * @throws IllegalArgumentException if n is negative
+   */
+  public static Plan plan(int n, int maxWaste, boolean padded) {
+    if (n < 0) {
+      throw new IllegalArgumentException("Input size must be non-negative: " + n);
+    }
+    if (n < 2) {
+      return new Plan(n, padded ? 2 : 0, 1);
+    }
+
+    long bestRows = 0;
+    long bestCols = 0;
+    long bestWaste = Long.MAX_VALUE;
+    boolean bestAcceptable = false;
+
+    // Past this point r >= 2(s - 1)^2 cannot hold, since r is at most about n / s
+    for (long s = 1; 2 * (s - 1) * (s - 1) * s <= n + 2 * s * s; s++) {
+      long step = s % 2 == 0 ? s : 2 * s;
+      long rows = padded ? roundUp((n + s - 1) / s, step) : n / s / step * step;
+      if (rows == 0 || rows < 2 * (s - 1) * (s - 1) || rows * s > MAX_MATRIX_SIZE) {
+        continue;
+      }
+
+      long waste = Math.abs(rows * s - n);
+      boolean acceptable = waste <= maxWaste;
+      if (acceptable || (!bestAcceptable && waste < bestWaste)) {
+        bestRows = rows;
+        bestCols = s;
+        bestWaste = waste;
+        bestAcceptable = acceptable;
+      }
+    }
+
+    if (bestCols == 0) {
+      throw new IllegalArgumentException("No valid matrix for an input of size " + n);
+    }
+    return new Plan(n, (int) bestRows, (int) bestCols);
+  }
+
+  /**
+   * Rounds the value up to the nearest multiple of step.
+   */
+  private static long roundUp(long value, long step) {
+    return (value + step - 1) / step * step;
+  }
+}
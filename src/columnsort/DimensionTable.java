@@ -0,0 +1,320 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DimensionTable maps an input size to the matrix dimensions (r, s and the
+ * size of the tail overflow partition) that columnsort uses for it.
+ *
+ * Sizes below the number of entries are answered from a precomputed table,
+ * and larger sizes are planned at runtime with DimensionPlanner.planWithin,
+ * so the table covers every input size. Each entry uses the largest valid
+ * matrix of at least two columns that fits in the input, i.e. the smallest
+ * tail, and among matrices of that size the one with the most columns. Every
+ * entry satisfies the prerequisites of the algorithm (r >= 2(s - 1)^2, s
+ * divides r, r even).
+ *
+ * Tables are stored in a versioned binary file with a 16 byte header followed
+ * by the entries:
+ * - bytes 0-3: the magic "CSDT"
+ * - byte 4: the byte order of every int in the file, 0 for big-endian and 1
+ * for little-endian
+ * - bytes 5-7: reserved, zero
+ * - bytes 8-11: the format version, currently 1
+ * - bytes 12-15: the number of entries
+ * - bytes 16-: three ints (r, s, tail) per entry, from input size 0 up
+ *
+ * Tables are written in the native byte order, so loading one is a single
+ * memory mapping with no conversion; only the entries a run actually looks up
+ * are paged in. Files in the other byte order are still read correctly.
+ *
+ * shared() opens the table configured by the system properties below the
+ * first time it is called. If the file is missing, from another version, or
+ * has too few entries, it is generated and written in its place; if it cannot
+ * be written, the generated table is used from memory.
+ * - columnsort.dimensionTable.path: the file, dimensionTable.bin in the
+ * working directory by default
+ * - columnsort.dimensionTable.entries: the number of entries, 8192 by default
+ *
+ * A table is immutable and can be shared by any number of threads.
+ */
+public final class DimensionTable {
+
+  /** File used by shared() unless configured otherwise */
+  public static final String DEFAULT_FILE = "dimensionTable.bin";
+
+  /** Number of entries used by shared() unless configured otherwise */
+  public static final int DEFAULT_ENTRIES = 8192;
+
+  /** Current version of the file format */
+  public static final int VERSION = 1;
+
+  /** System property naming the file used by shared() */
+  public static final String PATH_PROPERTY = "columnsort.dimensionTable.path";
+
+  /** System property holding the number of entries used by shared() */
+  public static final String ENTRIES_PROPERTY = "columnsort.dimensionTable.entries";
+
+  /** The first four bytes of every table file */
+  private static final int MAGIC = 'C' << 24 | 'S' << 16 | 'D' << 8 | 'T';
+
+  /** Size of the file header in bytes */
+  private static final int HEADER_BYTES = 16;
+
+  /** Number of ints per entry */
+  private static final int ENTRY_INTS = 3;
+
+  /** Largest table whose payload fits in a single mapping */
+  private static final int MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_BYTES) / (ENTRY_INTS * Integer.BYTES);
+
+  /** Table opened by shared(), or null until it is first needed */
+  private static volatile DimensionTable shared;
+
+  /** Rows, columns and tail of each size, three ints per entry */
+  private final IntBuffer entries;
+
+  private DimensionTable(IntBuffer entries) {
+    this.entries = entries;
+  }
+
+  /**
+   * Returns the table configured by the system properties, opening it the
+   * first time this is called and reusing it after that.
+   *
+   * @return the shared table
+   * @throws UncheckedIOException     if the file exists but cannot be read
+   * @throws IllegalArgumentException if the configured number of entries is
+   *                                  not a valid table size
+   */
+  public static DimensionTable shared() {
+    DimensionTable table = shared;
+    if (table == null) {
+      synchronized (DimensionTable.class) {
+        table = shared;
+        if (table == null) {
+          Path path = Paths.get(System.getProperty(PATH_PROPERTY, DEFAULT_FILE));
+          int count = Integer.getInteger(ENTRIES_PROPERTY, DEFAULT_ENTRIES);
+          try {
+            table = open(path, count);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          shared = table;
+        }
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Maps the table file if it is current and has at least count entries, or
+   * generates the table and writes it to the file otherwise. If the file
+   * cannot be written, the generated table is returned anyway.
+   *
+   * @param path  the table file
+   * @param count the number of entries needed
+   * @return the table
+   * @throws IOException              if the file exists but cannot be read
+   * @throws IllegalArgumentException if count is negative or too large
+   */
+  public static DimensionTable open(Path path, int count) throws IOException {
+    checkCount(count);
+    if (Files.isRegularFile(path) && isCurrent(path, count)) {
+      return map(path);
+    }
+
+    DimensionTable table = generate(count);
+    try {
+      table.write(path);
+    } catch (IOException e) {
+      return table;
+    }
+    return map(path);
+  }
+
+  /**
+   * Maps a table file into memory.
+   *
+   * @param path the table file
+   * @return the table, backed by the mapping
+   * @throws IOException if the file cannot be read or is not a table of the
+   *                     current version
+   */
+  public static DimensionTable map(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = readHeader(channel, path);
+      int count = header.getInt(12);
+      long payloadBytes = (long) count * ENTRY_INTS * Integer.BYTES;
+      if (channel.size() < HEADER_BYTES + payloadBytes) {
+        throw new IOException("Truncated dimension table " + path + ": expected " + count + " entries");
+      }
+      ByteBuffer payload = channel.map(MapMode.READ_ONLY, HEADER_BYTES, payloadBytes);
+      return new DimensionTable(payload.order(header.order()).asIntBuffer());
+    }
+  }
+
+  /**
+   * Computes a table with the given number of entries.
+   *
+   * @param count the number of entries, one per input size from 0
+   * @return the table, held in memory
+   * @throws IllegalArgumentException if count is negative or too large
+   */
+  public static DimensionTable generate(int count) {
+    checkCount(count);
+
+    // Largest number of columns of a valid matrix of exactly m elements, or 0.
+    // A single column would just sort the whole matrix at once, so s starts at 2
+    int[] bestCols = new int[count];
+    for (int s = 2; (long) 2 * (s - 1) * (s - 1) * s < count; s++) {
+      int step = s % 2 == 0 ? s : 2 * s;
+      long minRows = Math.max(step, (long) 2 * (s - 1) * (s - 1));
+      for (long r = (minRows + step - 1) / step * step; r * s < count; r += step) {
+        bestCols[(int) (r * s)] = s;
+      }
+    }
+
+    // Each size uses the largest valid matrix that fits in it
+    IntBuffer entries = IntBuffer.allocate(ENTRY_INTS * count);
+    int matrixSize = 0;
+    for (int n = 0; n < count; n++) {
+      if (bestCols[n] != 0) {
+        matrixSize = n;
+      }
+      int cols = matrixSize == 0 ? 1 : bestCols[matrixSize];
+      entries.put(matrixSize / cols).put(cols).put(n - matrixSize);
+    }
+    return new DimensionTable(entries.flip());
+  }
+
+  /**
+   * Returns a table with no precomputed entries, which plans every size at
+   * runtime.
+   */
+  public static DimensionTable planned() {
+    return new DimensionTable(IntBuffer.allocate(0));
+  }
+
+  /**
+   * Writes the table to a file in the native byte order, replacing the file
+   * only once the whole table has been written.
+   *
+   * @param path the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public void write(Path path) throws IOException {
+    ByteOrder order = ByteOrder.nativeOrder();
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + entries.limit() * Integer.BYTES).order(order);
+    buffer.order(ByteOrder.BIG_ENDIAN).putInt(MAGIC).order(order)
+        .put((byte) (order == ByteOrder.BIG_ENDIAN ? 0 : 1)).put(new byte[3])
+        .putInt(VERSION).putInt(entryCount());
+    buffer.asIntBuffer().put(entries.duplicate().rewind());
+    buffer.rewind();
+
+    Path absolute = path.toAbsolutePath();
+    Path temp = absolute.resolveSibling(absolute.getFileName() + "." + ProcessHandle.current().pid()
+        + "-" + Thread.currentThread().getId() + ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING)) {
+        while (buffer.hasRemaining()) {
+          channel.write(buffer);
+        }
+      }
+      Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Returns the number of sizes answered from the precomputed entries.
+   */
+  public int entryCount() {
+    return entries.limit() / ENTRY_INTS;
+  }
+
+  /**
+   * Returns the dimensions of the matrix for an input of size n. The matrix
+   * holds at most n elements and the rest form the tail overflow partition.
+   *
+   * @param n the number of elements to sort
+   * @return the plan for the input
+   * @throws IllegalArgumentException if n is negative
+   */
+  public DimensionPlanner.Plan plan(int n) {
+    if (n < 0) {
+      throw new IllegalArgumentException("Input size must be non-negative: " + n);
+    }
+    if (n < entryCount()) {
+      int entry = ENTRY_INTS * n;
+      return new DimensionPlanner.Plan(n, entries.get(entry), entries.get(entry + 1));
+    }
+    return DimensionPlanner.planWithin(n);
+  }
+
+  /**
+   * Returns whether the file is a table of the current version with at least
+   * count entries.
+   */
+  private static boolean isCurrent(Path path, int count) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = readHeader(channel, path);
+      return header.getInt(12) >= count
+          && channel.size() >= HEADER_BYTES + (long) header.getInt(12) * ENTRY_INTS * Integer.BYTES;
+    } catch (InvalidTableException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads and checks the header of a table file.
+   *
+   * @return the header, in the byte order of the file
+   * @throws InvalidTableException if the file is not a table of the current
+   *                               version
+   */
+  private static ByteBuffer readHeader(FileChannel channel, Path path) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    while (header.hasRemaining() && channel.read(header) >= 0) {
+      // Keep reading until the header is full or the file ends
+    }
+    if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+      throw new InvalidTableException("Not a dimension table: " + path);
+    }
+    header.order(header.get(4) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    if (header.getInt(8) != VERSION) {
+      throw new InvalidTableException("Unsupported dimension table version " + header.getInt(8) + ": " + path);
+    }
+    if (header.getInt(12) < 0) {
+      throw new InvalidTableException("Invalid dimension table entry count: " + path);
+    }
+    return header;
+  }
+
+  private static void checkCount(int count) {
+    if (count < 0 || count > MAX_ENTRIES) {
+      throw new IllegalArgumentException("Invalid number of table entries: " + count);
+    }
+  }
+
+  /**
+   * Thrown when a file is not a dimension table this version can read.
+   */
+  private static final class InvalidTableException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    InvalidTableException(String message) {
+      super(message);
+    }
+  }
+}
@@ -0,0 +1,804 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DistributedColumnsort runs columnsort across several worker processes,
+ * possibly on different machines, that talk over TCP sockets.
+ *
+ * Each worker owns a contiguous range of the s columns of the r x s matrix and
+ * holds only those columns (plus a scratch copy) in memory. The column sorts
+ * run locally on each worker, and the reshaping steps become exchanges of
+ * blocks directly between workers:
+ * - transpose and reshape: column c sends the elements in rows d, d + s, ...
+ * to column d, where they land in rows c * r/s to (c + 1) * r/s - 1
+ * - reshape and transpose: column d sends rows c * r/s to (c + 1) * r/s - 1
+ * to column c, where they land in rows d, d + s, ...
+ * - shift: column c sends its top half to column c - 1, which sorts it
+ * together with its own bottom half and sends the upper half of the result
+ * back, the same as shifting down by half a column, sorting, and shifting
+ * back up
+ *
+ * The coordinator streams the input columns to the workers, broadcasts each
+ * step as a command and waits for every worker to finish it before the next,
+ * and finally streams the sorted columns back into the output. It never holds
+ * more than one column of a binary input in memory; text input is parsed into
+ * memory first with InputLoader. The output is written with OutputWriter in
+ * the format implied by its extension.
+ *
+ * A lost worker fails the sort instead of hanging it. A worker whose
+ * connection to another worker breaks stops waiting for its blocks and fails
+ * its current step, and every connection and wait gives up after
+ * TIMEOUT_MILLIS without progress. A failed worker closes its connection to
+ * the coordinator, which then reports an error and closes its connections to
+ * the other workers, so they fail in turn.
+ *
+ * Execution: java DistributedColumnsort worker <port>
+ *            java DistributedColumnsort <input> <output> --workers=<host:port>[,<host:port>...]
+ *            java DistributedColumnsort <input> <output> --spawn=<count>
+ * Usage: Start a worker on each machine, then run the coordinator with their
+ *        addresses. --spawn starts the given number of workers as local JVMs
+ *        instead, which is handy for testing on one machine.
+ */
+public final class DistributedColumnsort {
+
+  /** First message on a connection from the coordinator */
+  private static final int HELLO_COORDINATOR = 1;
+
+  /** First message on a connection from another worker */
+  private static final int HELLO_PEER = 2;
+
+  // Commands from the coordinator
+  private static final int INIT = 10;
+  private static final int SORT = 11;
+  private static final int TRANSPOSE = 12;
+  private static final int UNTRANSPOSE = 13;
+  private static final int SHIFT = 14;
+  private static final int FETCH = 15;
+  private static final int QUIT = 16;
+
+  /** Reply to a command once the worker has finished it */
+  private static final int DONE = 20;
+
+  // Kinds of block exchanged between workers, indexing Worker.received
+  private static final int TRANSPOSED_BLOCK = 0;
+  private static final int UNTRANSPOSED_BLOCK = 1;
+  private static final int SHIFTED_BLOCK = 2;
+  private static final int UNSHIFTED_BLOCK = 3;
+
+  /** Size of the socket stream buffers, in bytes */
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Longest wait for a connection, a reply or a block before the peer on the
+   * other end is presumed lost. A step that runs longer on some worker without
+   * sending anything fails, so this bounds the time of one column sort.
+   */
+  private static final int TIMEOUT_MILLIS = 10 * 60 * 1000;
+
+  /** Longest wait to connect to a worker */
+  private static final int CONNECT_TIMEOUT_MILLIS = 30 * 1000;
+
+  private DistributedColumnsort() {
+  }
+
+  public static void main(String[] args) {
+    if (args.length == 2 && args[0].equals("worker")) {
+      try {
+        runWorker(Integer.parseInt(args[1]));
+      } catch (IOException | NumberFormatException e) {
+        System.out.println("Error: " + e.getMessage());
+        System.exit(1);
+      }
+      return;
+    }
+
+    if (args.length != 3 || !(args[2].startsWith("--workers=") || args[2].startsWith("--spawn="))) {
+      System.out.println("Usage: java DistributedColumnsort worker <port>");
+      System.out.println("       java DistributedColumnsort <input> <output> --workers=<host:port>[,...]");
+      System.out.println("       java DistributedColumnsort <input> <output> --spawn=<count>");
+      System.exit(1);
+    }
+
+    double startTime = System.nanoTime();
+    List<Process> spawned = new ArrayList<>();
+    try {
+      List<InetSocketAddress> workers = new ArrayList<>();
+      if (args[2].startsWith("--spawn=")) {
+        int count = Integer.parseInt(args[2].substring("--spawn=".length()));
+        if (count < 1) {
+          throw new IllegalArgumentException("Worker count must be a positive integer.");
+        }
+        spawned = spawnWorkers(count, workers);
+      } else {
+        for (String address : args[2].substring("--workers=".length()).split(",")) {
+          int colon = address.lastIndexOf(':');
+          if (colon < 0) {
+            throw new IllegalArgumentException("Worker address must be host:port, got " + address);
+          }
+          workers.add(new InetSocketAddress(address.substring(0, colon),
+              Integer.parseInt(address.substring(colon + 1))));
+        }
+      }
+
+      DimensionPlanner.Plan plan = sort(Paths.get(args[0]), Paths.get(args[1]), workers);
+      for (Process process : spawned) {
+        process.waitFor();
+      }
+      System.out.println("n = " + plan.size + "\nr = " + plan.rows + "\ns = " + plan.cols);
+      System.out.println("workers = " + workers.size());
+    } catch (IOException | IllegalArgumentException | InterruptedException e) {
+      System.out.println("Error: " + e.getMessage());
+      for (Process process : spawned) {
+        process.destroy();
+      }
+      System.exit(1);
+    }
+    double endTime = System.nanoTime();
+
+    String formattedTime = String.format("%.3f", (endTime - startTime) / 1_000_000_000.0);
+    System.out.println("Elapsed time = " + formattedTime + " seconds.");
+  }
+
+  /* ------------------------------- COORDINATOR ------------------------------ */
+
+  /**
+   * Sorts the ints in the input file into the output file on the given
+   * workers. If the matrix has fewer columns than there are workers, the
+   * extra workers are sent away without any columns.
+   *
+   * @param inputPath  file of ints to sort, in the format implied by its
+   *                   extension (see InputLoader)
+   * @param outputPath file to write the sorted ints to, replaced if it exists
+   * @param workers    the addresses of the workers, which must be listening
+   * @return the dimensions of the matrix that was sorted
+   * @throws IOException              if a file cannot be read or written, or a
+   *                                  worker cannot be reached or fails
+   * @throws IllegalArgumentException if the input is malformed
+   */
+  public static DimensionPlanner.Plan sort(Path inputPath, Path outputPath, List<InetSocketAddress> workers)
+      throws IOException {
+    InputLoader.Format inputFormat = InputLoader.Format.forFile(inputPath);
+    int[] text = inputFormat == InputLoader.Format.TEXT ? InputLoader.load(inputPath) : null;
+    try (FileChannel input = text == null ? FileChannel.open(inputPath, StandardOpenOption.READ) : null) {
+      long size = text != null ? text.length : input.size() / Integer.BYTES;
+      if (text == null && input.size() % Integer.BYTES != 0) {
+        throw new IllegalArgumentException(inputPath + " is not a whole number of 32-bit ints");
+      }
+      if (size > Integer.MAX_VALUE - 8) {
+        throw new IllegalArgumentException("Input holds " + size + " ints, more than fit in an array");
+      }
+      DimensionPlanner.Plan plan = DimensionPlanner.plan((int) size);
+      int rows = plan.rows;
+      int cols = plan.cols;
+      int active = Math.min(workers.size(), cols);
+
+      List<Socket> sockets = new ArrayList<>();
+      try {
+        DataInputStream[] ins = new DataInputStream[workers.size()];
+        DataOutputStream[] outs = new DataOutputStream[workers.size()];
+        for (int w = 0; w < workers.size(); w++) {
+          Socket socket = connect(workers.get(w));
+          sockets.add(socket);
+          ins[w] = new DataInputStream(new BufferedInputStream(socket.getInputStream(), STREAM_BUFFER_SIZE));
+          outs[w] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER_SIZE));
+          outs[w].writeInt(HELLO_COORDINATOR);
+        }
+        for (int w = active; w < workers.size(); w++) {
+          outs[w].writeInt(QUIT);
+          outs[w].flush();
+        }
+
+        // Hand each worker its columns, read one at a time from the input
+        int[] column = new int[rows];
+        ByteBuffer bytes = ByteBuffer.allocate(rows * Integer.BYTES);
+        for (int w = 0; w < active; w++) {
+          outs[w].writeInt(INIT);
+          outs[w].writeInt(rows);
+          outs[w].writeInt(cols);
+          outs[w].writeInt(active);
+          outs[w].writeInt(w);
+          for (int p = 0; p < active; p++) {
+            outs[w].writeUTF(workers.get(p).getHostString());
+            outs[w].writeInt(workers.get(p).getPort());
+          }
+          for (int c = firstColumn(w, active, cols); c < firstColumn(w + 1, active, cols); c++) {
+            readColumn(input, text, inputFormat, size, c, column);
+            writeInts(outs[w], column, 0, rows, bytes);
+          }
+          outs[w].flush();
+        }
+        awaitAll(ins, active);
+
+        // Follow the steps of the columnsort algorithm
+        int[] steps = { SORT, TRANSPOSE, SORT, UNTRANSPOSE, SORT, SHIFT };
+        for (int step : steps) {
+          for (int w = 0; w < active; w++) {
+            outs[w].writeInt(step);
+            outs[w].flush();
+          }
+          awaitAll(ins, active);
+        }
+
+        // Collect the columns in order, dropping the padding
+        InputLoader.Format outputFormat = InputLoader.Format.forFile(outputPath);
+        try (OutputWriter writer = OutputWriter.toFile(outputPath, outputFormat)) {
+          long written = 0;
+          for (int w = 0; w < active; w++) {
+            outs[w].writeInt(FETCH);
+            outs[w].flush();
+            for (int c = firstColumn(w, active, cols); c < firstColumn(w + 1, active, cols); c++) {
+              readInts(ins[w], column, rows, bytes);
+              int length = (int) Math.min(rows, size - written);
+              writer.write(column, 0, length);
+              written += length;
+            }
+            outs[w].writeInt(QUIT);
+            outs[w].flush();
+          }
+        }
+        return plan;
+      } finally {
+        for (Socket socket : sockets) {
+          socket.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Reads column c of the input into the column buffer, padding any rows past
+   * the end of the input with Integer.MAX_VALUE.
+   */
+  private static void readColumn(FileChannel input, int[] text, InputLoader.Format format, long size, int c,
+      int[] column) throws IOException {
+    int rows = column.length;
+    long start = (long) c * rows;
+    int length = (int) Math.max(0, Math.min(rows, size - start));
+    if (text != null) {
+      System.arraycopy(text, (int) start, column, 0, length);
+    } else if (length > 0) {
+      input.map(MapMode.READ_ONLY, start * Integer.BYTES, (long) length * Integer.BYTES)
+          .order(format == InputLoader.Format.BINARY_LE ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN)
+          .asIntBuffer().get(column, 0, length);
+    }
+    Arrays.fill(column, length, rows, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Connects to a worker, with TIMEOUT_MILLIS as the read timeout.
+   */
+  private static Socket connect(InetSocketAddress address) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.connect(new InetSocketAddress(address.getHostString(), address.getPort()), CONNECT_TIMEOUT_MILLIS);
+      socket.setSoTimeout(TIMEOUT_MILLIS);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+    return socket;
+  }
+
+  /**
+   * Waits for the first count workers to report that they are done.
+   */
+  private static void awaitAll(DataInputStream[] ins, int count) throws IOException {
+    for (int w = 0; w < count; w++) {
+      int reply;
+      try {
+        reply = ins[w].readInt();
+      } catch (EOFException e) {
+        throw new IOException("Worker " + w + " disconnected", e);
+      }
+      if (reply != DONE) {
+        throw new IOException("Unexpected reply " + reply + " from worker " + w);
+      }
+    }
+  }
+
+  /**
+   * Starts workers as local JVMs on free ports, adding their addresses to the
+   * list. The workers run with the class path of this JVM.
+   *
+   * @param count     the number of workers to start
+   * @param addresses the list to add the addresses of the workers to
+   * @return the worker processes
+   * @throws IOException if a worker cannot be started
+   */
+  static List<Process> spawnWorkers(int count, List<InetSocketAddress> addresses) throws IOException {
+    String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+    List<Process> processes = new ArrayList<>();
+    for (int w = 0; w < count; w++) {
+      Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+          "DistributedColumnsort", "worker", "0")
+          .redirectError(ProcessBuilder.Redirect.INHERIT)
+          .start();
+      processes.add(process);
+
+      // The worker announces the port it bound on its first line of output
+      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+      String line = reader.readLine();
+      if (line == null || !line.startsWith("Listening on port ")) {
+        throw new IOException("Worker " + w + " failed to start");
+      }
+      addresses.add(new InetSocketAddress("localhost", Integer.parseInt(line.substring("Listening on port ".length()))));
+    }
+    return processes;
+  }
+
+  /**
+   * Returns the first column owned by worker w when cols columns are split
+   * into contiguous ranges over the given number of workers. Worker w owns
+   * columns firstColumn(w) to firstColumn(w + 1) - 1.
+   */
+  private static int firstColumn(int w, int workers, int cols) {
+    return (int) ((long) w * cols / workers);
+  }
+
+  /* --------------------------------- WORKER --------------------------------- */
+
+  /**
+   * Listens on the port, printing the port actually bound, and serves one
+   * coordinator until it sends QUIT. Connections from other workers are served
+   * on their own threads.
+   *
+   * @param port the port to listen on, or 0 for any free port
+   * @throws IOException if the socket fails
+   */
+  private static void runWorker(int port) throws IOException {
+    try (ServerSocket server = new ServerSocket(port)) {
+      System.out.println("Listening on port " + server.getLocalPort());
+      System.out.flush();
+
+      Worker worker = new Worker();
+      SynchronousQueue<Connection> coordinator = new SynchronousQueue<>();
+      Thread acceptor = new Thread(() -> worker.accept(server, coordinator), "acceptor");
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      Connection connection;
+      try {
+        connection = coordinator.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        throw new IOException("Interrupted while waiting for the coordinator", e);
+      }
+      if (connection == null) {
+        throw new IOException("No coordinator connected within " + TIMEOUT_MILLIS / 1000 + " seconds");
+      }
+      try {
+        connection.socket.setSoTimeout(TIMEOUT_MILLIS);
+        worker.serve(connection.in, new DataOutputStream(
+            new BufferedOutputStream(connection.socket.getOutputStream(), STREAM_BUFFER_SIZE)));
+      } finally {
+        worker.closePeers();
+        connection.socket.close();
+      }
+    }
+  }
+
+  /**
+   * An accepted socket and the stream its hello was read from, which may
+   * already have buffered the messages that follow.
+   */
+  private static final class Connection {
+    final Socket socket;
+    final DataInputStream in;
+
+    Connection(Socket socket, DataInputStream in) {
+      this.socket = socket;
+      this.in = in;
+    }
+  }
+
+  /**
+   * The state of one worker: the columns it owns and its connections to the
+   * other workers.
+   */
+  private static final class Worker {
+    private int rows;
+    private int cols;
+    private int blockSize;
+    private int self;
+    private int first;
+    private int count;
+    private List<InetSocketAddress> peers;
+    private DataOutputStream[] peerOuts;
+    private ByteBuffer sendBytes;
+
+    /** The owned columns, in column-major order */
+    private volatile int[] local;
+
+    /** Where blocks from other columns are gathered before being swapped in */
+    private volatile int[] scratch;
+
+    /** Number of blocks of each kind received so far, guarded by this */
+    private final long[] received = new long[4];
+
+    /** Number of blocks of each kind expected by the end of the current step */
+    private final long[] expected = new long[4];
+
+    /** Why a connection from another worker broke, or null, guarded by this */
+    private IOException failure;
+
+    /**
+     * Accepts connections forever, handing the coordinator's to the queue and
+     * serving each other worker's on a new thread.
+     */
+    void accept(ServerSocket server, SynchronousQueue<Connection> coordinator) {
+      try {
+        while (true) {
+          Socket socket = server.accept();
+          DataInputStream in = new DataInputStream(
+              new BufferedInputStream(socket.getInputStream(), STREAM_BUFFER_SIZE));
+          int hello = in.readInt();
+          if (hello == HELLO_COORDINATOR) {
+            coordinator.put(new Connection(socket, in));
+          } else if (hello == HELLO_PEER) {
+            Thread receiver = new Thread(() -> receive(in), "receiver");
+            receiver.setDaemon(true);
+            receiver.start();
+          } else {
+            socket.close();
+          }
+        }
+      } catch (IOException | InterruptedException e) {
+        // The server socket was closed, so the worker is shutting down
+      }
+    }
+
+    /**
+     * Runs the coordinator's commands until it sends QUIT.
+     */
+    void serve(DataInputStream in, DataOutputStream out) throws IOException {
+      while (true) {
+        int command;
+        try {
+          command = in.readInt();
+        } catch (EOFException e) {
+          throw new IOException("The coordinator disconnected", e);
+        }
+        switch (command) {
+          case INIT:
+            init(in);
+            break;
+          case SORT:
+            FlatColumnsort.sortColumns(local, 0, rows, count, ColumnSorter.ADAPTIVE, null);
+            break;
+          case TRANSPOSE:
+            transpose();
+            break;
+          case UNTRANSPOSE:
+            untranspose();
+            break;
+          case SHIFT:
+            shift();
+            break;
+          case FETCH:
+            ByteBuffer bytes = ByteBuffer.allocate(rows * Integer.BYTES);
+            for (int j = 0; j < count; j++) {
+              writeInts(out, local, j * rows, rows, bytes);
+            }
+            out.flush();
+            continue;
+          case QUIT:
+            return;
+          default:
+            throw new IOException("Unknown command " + command);
+        }
+        out.writeInt(DONE);
+        out.flush();
+      }
+    }
+
+    /**
+     * Reads the dimensions, the addresses of the workers, and the owned
+     * columns.
+     */
+    private void init(DataInputStream in) throws IOException {
+      rows = in.readInt();
+      cols = in.readInt();
+      int workers = in.readInt();
+      self = in.readInt();
+      peers = new ArrayList<>();
+      for (int p = 0; p < workers; p++) {
+        peers.add(new InetSocketAddress(in.readUTF(), in.readInt()));
+      }
+      peerOuts = new DataOutputStream[workers];
+      blockSize = rows / cols;
+      first = firstColumn(self, workers, cols);
+      count = firstColumn(self + 1, workers, cols) - first;
+      sendBytes = ByteBuffer.allocate(rows * Integer.BYTES);
+
+      local = new int[count * rows];
+      scratch = new int[count * rows];
+      int[] column = new int[rows];
+      for (int j = 0; j < count; j++) {
+        readInts(in, column, rows, sendBytes);
+        System.arraycopy(column, 0, local, j * rows, rows);
+      }
+    }
+
+    /**
+     * Sends rows d, d + s, ... of every owned column c to column d, rows
+     * c * r/s onwards, and swaps in the gathered columns.
+     */
+    private void transpose() throws IOException {
+      expect(TRANSPOSED_BLOCK, (long) count * cols);
+      int[] block = new int[blockSize];
+      for (int j = 0; j < count; j++) {
+        int c = first + j;
+        for (int d = 0; d < cols; d++) {
+          for (int t = 0; t < blockSize; t++) {
+            block[t] = local[j * rows + d + t * cols];
+          }
+          send(TRANSPOSED_BLOCK, d, c * blockSize, 1, block, blockSize);
+        }
+      }
+      flushPeers();
+      await(TRANSPOSED_BLOCK);
+      swap();
+    }
+
+    /**
+     * Sends rows c * r/s to (c + 1) * r/s - 1 of every owned column d to
+     * column c, rows d, d + s, ..., and swaps in the gathered columns.
+     */
+    private void untranspose() throws IOException {
+      expect(UNTRANSPOSED_BLOCK, (long) count * cols);
+      int[] block = new int[blockSize];
+      for (int j = 0; j < count; j++) {
+        int d = first + j;
+        for (int c = 0; c < cols; c++) {
+          System.arraycopy(local, j * rows + c * blockSize, block, 0, blockSize);
+          send(UNTRANSPOSED_BLOCK, c, d, cols, block, blockSize);
+        }
+      }
+      flushPeers();
+      await(UNTRANSPOSED_BLOCK);
+      swap();
+    }
+
+    /**
+     * Sorts the windows straddling each pair of neighbouring columns. The top
+     * half of each column is sent to the previous column, which sorts it with
+     * its own bottom half and sends the upper half of the window back.
+     */
+    private void shift() throws IOException {
+      int half = rows / 2;
+      int last = first + count - 1;
+      expect(SHIFTED_BLOCK, last == cols - 1 ? count - 1 : count);
+      expect(UNSHIFTED_BLOCK, first == 0 ? count - 1 : count);
+
+      int[] block = new int[half];
+      for (int j = 0; j < count; j++) {
+        if (first + j > 0) {
+          System.arraycopy(local, j * rows, block, 0, half);
+          send(SHIFTED_BLOCK, first + j - 1, 0, 1, block, half);
+        }
+      }
+      flushPeers();
+      await(SHIFTED_BLOCK);
+
+      int[] window = new int[rows];
+      for (int j = 0; j < count; j++) {
+        if (first + j < cols - 1) {
+          System.arraycopy(local, j * rows + half, window, 0, half);
+          System.arraycopy(scratch, j * rows, window, half, half);
+          ColumnSorter.ADAPTIVE.sort(window, 0, rows);
+          System.arraycopy(window, 0, local, j * rows + half, half);
+          System.arraycopy(window, half, block, 0, half);
+          send(UNSHIFTED_BLOCK, first + j + 1, 0, 1, block, half);
+        }
+      }
+      flushPeers();
+      await(UNSHIFTED_BLOCK);
+    }
+
+    /**
+     * Sends a block to the given column, to be stored at rows start,
+     * start + stride, ... of it, delivering it directly if the column is owned.
+     */
+    private void send(int kind, int column, int start, int stride, int[] block, int length) throws IOException {
+      int owner = ownerOf(column);
+      if (owner == self) {
+        deliver(kind, column, start, stride, block, length);
+        return;
+      }
+      DataOutputStream out = peerOuts[owner];
+      if (out == null) {
+        Socket socket = connect(peers.get(owner));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), STREAM_BUFFER_SIZE));
+        out.writeInt(HELLO_PEER);
+        peerOuts[owner] = out;
+      }
+      out.writeInt(kind);
+      out.writeInt(column);
+      out.writeInt(start);
+      out.writeInt(stride);
+      out.writeInt(length);
+      writeInts(out, block, 0, length, sendBytes);
+    }
+
+    /**
+     * Reads blocks from another worker until it disconnects. Workers only
+     * disconnect from each other once the coordinator has sent QUIT, after the
+     * last step, so a disconnect is recorded as a failure for await, which
+     * only waits during steps.
+     */
+    private void receive(DataInputStream in) {
+      int[] block = new int[0];
+      ByteBuffer bytes = ByteBuffer.allocate(0);
+      try {
+        while (true) {
+          int kind;
+          try {
+            kind = in.readInt();
+          } catch (EOFException e) {
+            fail(new IOException("Another worker disconnected", e));
+            return;
+          }
+          int column = in.readInt();
+          int start = in.readInt();
+          int stride = in.readInt();
+          int length = in.readInt();
+          if (block.length < length) {
+            block = new int[length];
+            bytes = ByteBuffer.allocate(length * Integer.BYTES);
+          }
+          readInts(in, block, length, bytes);
+          deliver(kind, column, start, stride, block, length);
+        }
+      } catch (IOException e) {
+        fail(new IOException("Error receiving from another worker: " + e.getMessage(), e));
+      }
+    }
+
+    /**
+     * Records the first failure of a connection from another worker and wakes
+     * up await.
+     */
+    private synchronized void fail(IOException e) {
+      if (failure == null) {
+        failure = e;
+      }
+      notifyAll();
+    }
+
+    /**
+     * Stores a block in an owned column and counts it. Unshifted blocks go
+     * straight into the owned columns, all others into the scratch columns.
+     */
+    private void deliver(int kind, int column, int start, int stride, int[] block, int length) {
+      int[] target = kind == UNSHIFTED_BLOCK ? local : scratch;
+      int base = (column - first) * rows + start;
+      for (int t = 0; t < length; t++) {
+        target[base + t * stride] = block[t];
+      }
+      synchronized (this) {
+        received[kind]++;
+        notifyAll();
+      }
+    }
+
+    private synchronized void expect(int kind, long blocks) {
+      expected[kind] += blocks;
+    }
+
+    /**
+     * Waits until every block of the given kind expected so far has arrived.
+     *
+     * @throws IOException if a connection from another worker broke, or no
+     *                     block arrived for TIMEOUT_MILLIS
+     */
+    private synchronized void await(int kind) throws IOException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+      long seen = received[kind];
+      while (received[kind] < expected[kind]) {
+        if (failure != null) {
+          throw new IOException(failure.getMessage(), failure);
+        }
+        if (received[kind] != seen) {
+          seen = received[kind];
+          deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+          throw new IOException("Timed out waiting for " + (expected[kind] - received[kind])
+              + " blocks from other workers");
+        }
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          throw new IOException("Interrupted while waiting for blocks", e);
+        }
+      }
+    }
+
+    private void swap() {
+      int[] gathered = scratch;
+      scratch = local;
+      local = gathered;
+    }
+
+    private int ownerOf(int column) {
+      int owner = (int) ((long) column * peers.size() / cols);
+      while (firstColumn(owner + 1, peers.size(), cols) <= column) {
+        owner++;
+      }
+      while (firstColumn(owner, peers.size(), cols) > column) {
+        owner--;
+      }
+      return owner;
+    }
+
+    private void flushPeers() throws IOException {
+      for (DataOutputStream out : peerOuts) {
+        if (out != null) {
+          out.flush();
+        }
+      }
+    }
+
+    void closePeers() throws IOException {
+      if (peerOuts == null) {
+        return;
+      }
+      for (DataOutputStream out : peerOuts) {
+        if (out != null) {
+          out.close();
+        }
+      }
+    }
+  }
+
+  /* ---------------------------------- WIRE ---------------------------------- */
+
+  /**
+   * Writes length ints of the array, starting at offset, as big-endian bytes.
+   */
+  private static void writeInts(DataOutputStream out, int[] array, int offset, int length, ByteBuffer bytes)
+      throws IOException {
+    for (int from = offset, end = offset + length; from < end;) {
+      int chunk = Math.min(end - from, bytes.capacity() / Integer.BYTES);
+      bytes.clear();
+      bytes.asIntBuffer().put(array, from, chunk);
+      out.write(bytes.array(), 0, chunk * Integer.BYTES);
+      from += chunk;
+    }
+  }
+
+  /**
+   * Reads length big-endian ints into the start of the array.
+   */
+  private static void readInts(DataInputStream in, int[] array, int length, ByteBuffer bytes)
+      throws IOException {
+    for (int from = 0; from < length;) {
+      int chunk = Math.min(length - from, bytes.capacity() / Integer.BYTES);
+      in.readFully(bytes.array(), 0, chunk * Integer.BYTES);
+      bytes.clear();
+      bytes.asIntBuffer().get(array, from, chunk);
+      from += chunk;
+    }
+  }
+}
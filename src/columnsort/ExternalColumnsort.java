@@ -0,0 +1,339 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * ExternalColumnsort contains an out-of-core implementation of the columnsort
+ * algorithm for inputs that do not fit in memory.
+ *
+ * The input is a binary file of big-endian 32-bit ints (the format written by
+ * DataOutputStream.writeInt). The matrix is kept on disk in column-major order
+ * and only one column is ever held in memory, so the number of rows is bounded
+ * by the memory budget. Columns are read through memory-mapped windows, sorted
+ * in a single reusable int array, and written back out as follows:
+ * 1. Each input column is sorted and scattered in blocks of rows / cols
+ * elements to a temporary file, which transposes and reshapes it.
+ * 2. Each column of the temporary file is sorted in place.
+ * 3. Each output column is gathered from one block of every temporary column,
+ * which reshapes and transposes it back, then sorted and written out.
+ * 4. The windows straddling each pair of neighbouring output columns are
+ * sorted in place, which is the same as shifting down by half a column,
+ * sorting, and shifting back up.
+ *
+ * Inputs that do not fill the matrix are padded with Integer.MAX_VALUE, which
+ * sorts to the end and is truncated from the output.
+ *
+ * The memory budget covers every array the sort allocates on the heap:
+ * - the column buffer, rows ints
+ * - for the RADIX, MERGE and ADAPTIVE kernels, a scratch array of rows ints
+ * owned by the sort, which they use instead of the ScratchPool of the thread
+ * so nothing column-sized outlives the call
+ *
+ * With those kernels a column therefore takes 8 bytes per row and rows is at
+ * most budget / 8, otherwise 4 bytes and budget / 4. The peak heap use is the
+ * budget plus a direct buffer of one block (rows / cols ints); the mapped
+ * windows live in the page cache. Other kernels, e.g. ColumnSorter.vector(),
+ * may allocate scratch of their own that the budget does not cover.
+ *
+ * Execution: java ExternalColumnsort <input> <output> [<memoryMB>]
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Columnsort">Columnsort -
+ *      Wikipedia</a>
+ */
+public final class ExternalColumnsort {
+
+  /** Default memory budget for the column and scratch buffers, in megabytes */
+  private static final long DEFAULT_MEMORY_MB = 256;
+
+  private final FileChannel input;
+  private final FileChannel temp;
+  private final FileChannel output;
+  private final long size;
+  private final int rows;
+  private final int cols;
+  private final int blockSize;
+  private final ColumnSorter sorter;
+
+  /** Buffer holding the column currently being sorted */
+  private final int[] column;
+
+  /** Scratch array of the kernel, or null if it sorts in place */
+  private final int[] scratch;
+
+  /** Direct buffer used to stream one block of a column to or from disk */
+  private final ByteBuffer block;
+
+  private ExternalColumnsort(FileChannel input, FileChannel temp, FileChannel output, long size, int rows,
+      int cols, ColumnSorter sorter) {
+    this.input = input;
+    this.temp = temp;
+    this.output = output;
+    this.size = size;
+    this.rows = rows;
+    this.cols = cols;
+    this.blockSize = rows / cols;
+    this.column = new int[rows];
+    this.scratch = needsScratch(sorter) ? new int[rows] : null;
+    this.sorter = withScratch(sorter, scratch);
+    this.block = ByteBuffer.allocateDirect(blockSize * Integer.BYTES);
+  }
+
+  public static void main(String[] args) {
+    if (args.length < 2 || args.length > 3) {
+      System.out.println("Usage: java ExternalColumnsort <input> <output> [<memoryMB>]");
+      System.exit(1);
+    }
+
+    long memoryMB = DEFAULT_MEMORY_MB;
+    if (args.length == 3) {
+      try {
+        memoryMB = Long.parseLong(args[2]);
+      } catch (NumberFormatException e) {
+        memoryMB = 0;
+      }
+      if (memoryMB < 1) {
+        System.out.println("Error: Memory budget must be a positive number of megabytes.");
+        System.exit(1);
+      }
+    }
+
+    double startTime = System.nanoTime();
+    try {
+      sort(Paths.get(args[0]), Paths.get(args[1]), memoryMB << 20);
+    } catch (IOException | IllegalArgumentException e) {
+      System.out.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+    double endTime = System.nanoTime();
+
+    String formattedTime = String.format("%.3f", (endTime - startTime) / 1_000_000_000.0);
+    System.out.println("Elapsed time = " + formattedTime + " seconds.");
+  }
+
+  /**
+   * Sorts the ints in the input file into the output file without holding more
+   * than one matrix column in memory.
+   *
+   * @param inputPath    binary file of big-endian ints to sort
+   * @param outputPath   file to write the sorted ints to, replaced if it exists
+   * @param memoryBudget maximum number of bytes to spend on the column and
+   *                     scratch buffers
+   * @throws IOException              if a file cannot be read or written
+   * @throws IllegalArgumentException if the input is not a whole number of ints
+   *                                  or the budget is too small for its size
+   */
+  public static void sort(Path inputPath, Path outputPath, long memoryBudget) throws IOException {
+    sort(inputPath, outputPath, memoryBudget, ColumnSorter.ADAPTIVE);
+  }
+
+  /**
+   * Sorts the ints in the input file into the output file without holding more
+   * than one matrix column in memory, using the given kernel for the columns.
+   *
+   * @param inputPath    binary file of big-endian ints to sort
+   * @param outputPath   file to write the sorted ints to, replaced if it exists
+   * @param memoryBudget maximum number of bytes to spend on the column and
+   *                     scratch buffers
+   * @param sorter       the kernel used to sort each column
+   * @throws IOException              if a file cannot be read or written
+   * @throws IllegalArgumentException if the input is not a whole number of ints
+   *                                  or the budget is too small for its size
+   */
+  public static void sort(Path inputPath, Path outputPath, long memoryBudget, ColumnSorter sorter)
+      throws IOException {
+    long bytes = Files.size(inputPath);
+    if (bytes % Integer.BYTES != 0) {
+      throw new IllegalArgumentException(inputPath + " is not a whole number of 32-bit ints");
+    }
+    long size = bytes / Integer.BYTES;
+    int bytesPerRow = needsScratch(sorter) ? 2 * Integer.BYTES : Integer.BYTES;
+    int maxRows = (int) Math.min(memoryBudget / bytesPerRow, Integer.MAX_VALUE - 8);
+    if (maxRows < 2) {
+      throw new IllegalArgumentException("Memory budget must hold at least two rows of " + bytesPerRow + " bytes");
+    }
+    int[] dims = matrixDims(size, maxRows);
+
+    Path dir = outputPath.toAbsolutePath().getParent();
+    Path tempPath = Files.createTempFile(dir, "columnsort", ".tmp");
+    try (FileChannel in = FileChannel.open(inputPath, StandardOpenOption.READ);
+        FileChannel tmp = FileChannel.open(tempPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.DELETE_ON_CLOSE);
+        FileChannel out = FileChannel.open(outputPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      new ExternalColumnsort(in, tmp, out, size, dims[0], dims[1], sorter).run();
+      out.truncate(bytes);
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /**
+   * Chooses the matrix dimensions for an input of the given size. The number of
+   * columns is the smallest for which a column fits in maxRows, the number of
+   * rows is rounded up to an even multiple of the number of columns, and the
+   * rest of the matrix is padding.
+   *
+   * @param size    the number of elements to sort
+   * @param maxRows the largest column that fits in the memory budget
+   * @return the number of rows and columns, as { rows, cols }
+   * @throws IllegalArgumentException if no column that fits satisfies
+   *                                  rows >= 2(cols - 1)^2
+   */
+  private static int[] matrixDims(long size, int maxRows) {
+    long cols = Math.max(1, (size + maxRows - 1) / maxRows);
+    while (true) {
+      long step = cols % 2 == 0 ? cols : 2 * cols;
+      long rows = Math.max(step, ((size + cols - 1) / cols + step - 1) / step * step);
+      if (rows < 2 * (cols - 1) * (cols - 1)) {
+        throw new IllegalArgumentException("Memory budget is too small to sort " + size + " ints");
+      }
+      if (rows <= maxRows) {
+        return new int[] { (int) rows, (int) cols };
+      }
+      cols++;
+    }
+  }
+
+  /**
+   * Returns whether the kernel needs a scratch array as long as the column.
+   */
+  private static boolean needsScratch(ColumnSorter sorter) {
+    return sorter == ColumnSorter.RADIX || sorter == ColumnSorter.MERGE || sorter == ColumnSorter.ADAPTIVE;
+  }
+
+  /**
+   * Returns a kernel that sorts as the given one does, but takes its scratch
+   * array from the given one instead of the ScratchPool of the thread.
+   *
+   * @param sorter  the kernel
+   * @param scratch an array at least as long as every column sorted, or null
+   *                if needsScratch(sorter) is false
+   */
+  private static ColumnSorter withScratch(ColumnSorter sorter, int[] scratch) {
+    ColumnSorter radix = (array, from, to) -> SortingAlgs.radixSort(array, from, to, scratch);
+    if (sorter == ColumnSorter.RADIX) {
+      return radix;
+    } else if (sorter == ColumnSorter.MERGE) {
+      return (array, from, to) -> SortingAlgs.mergeSort(array, from, to, scratch);
+    } else if (sorter == ColumnSorter.ADAPTIVE) {
+      // Only the radix branch of ADAPTIVE takes scratch
+      return (array, from, to) -> {
+        if (to - from < ColumnSorter.RADIX_THRESHOLD) {
+          ColumnSorter.ADAPTIVE.sort(array, from, to);
+        } else {
+          radix.sort(array, from, to);
+        }
+      };
+    }
+    return sorter;
+  }
+
+  /**
+   * Runs the passes of the algorithm. See the class description for details.
+   */
+  private void run() throws IOException {
+    // Steps 1 and 2: sort each column and transpose it into the temp file
+    for (int j = 0; j < cols; j++) {
+      readInputColumn(j);
+      sorter.sort(column, 0, rows);
+      for (int c = 0; c < cols; c++) {
+        IntBuffer ints = block.clear().asIntBuffer();
+        for (int i = c; i < rows; i += cols) {
+          ints.put(column[i]);
+        }
+        writeBlock(temp, (long) c * rows + (long) j * blockSize);
+      }
+    }
+
+    // Step 3: sort each column of the temp file in place
+    for (int c = 0; c < cols; c++) {
+      sortInPlace(temp, (long) c * rows);
+    }
+
+    // Steps 4 and 5: gather each output column back from the temp file and sort
+    for (int d = 0; d < cols; d++) {
+      for (int c = 0; c < cols; c++) {
+        IntBuffer ints = readBlock(temp, (long) c * rows + (long) d * blockSize);
+        for (int t = 0; t < blockSize; t++) {
+          column[t * cols + c] = ints.get(t);
+        }
+      }
+      sorter.sort(column, 0, rows);
+      map(output, (long) d * rows, rows).asIntBuffer().put(column);
+    }
+
+    // Steps 6 to 8: shift down by half a column, sort, and shift back up
+    for (int j = 0; j < cols - 1; j++) {
+      sortInPlace(output, (long) j * rows + rows / 2);
+    }
+  }
+
+  /**
+   * Reads column j of the input into the column buffer, padding any rows past
+   * the end of the input with Integer.MAX_VALUE.
+   */
+  private void readInputColumn(int j) throws IOException {
+    long start = (long) j * rows;
+    int length = (int) Math.max(0, Math.min(rows, size - start));
+    if (length > 0) {
+      input.map(MapMode.READ_ONLY, start * Integer.BYTES, (long) length * Integer.BYTES)
+          .asIntBuffer().get(column, 0, length);
+    }
+    Arrays.fill(column, length, rows, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Sorts the rows ints of the file starting at the given element index.
+   */
+  private void sortInPlace(FileChannel channel, long start) throws IOException {
+    IntBuffer window = map(channel, start, rows).asIntBuffer();
+    window.get(column);
+    sorter.sort(column, 0, rows);
+    window.rewind();
+    window.put(column);
+  }
+
+  /**
+   * Maps length ints of the file starting at the given element index.
+   */
+  private static MappedByteBuffer map(FileChannel channel, long start, int length) throws IOException {
+    return channel.map(MapMode.READ_WRITE, start * Integer.BYTES, (long) length * Integer.BYTES);
+  }
+
+  /**
+   * Writes the contents of the block buffer to the file at the given element
+   * index.
+   */
+  private void writeBlock(FileChannel channel, long start) throws IOException {
+    block.clear();
+    long position = start * Integer.BYTES;
+    while (block.hasRemaining()) {
+      position += channel.write(block, position);
+    }
+  }
+
+  /**
+   * Reads one block from the file at the given element index into the block
+   * buffer and returns it as ints.
+   */
+  private IntBuffer readBlock(FileChannel channel, long start) throws IOException {
+    block.clear();
+    long position = start * Integer.BYTES;
+    while (block.hasRemaining()) {
+      int read = channel.read(block, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of file in " + channel);
+      }
+      position += read;
+    }
+    return block.flip().asIntBuffer();
+  }
+}
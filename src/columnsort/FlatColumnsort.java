@@ -0,0 +1,290 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * FlatColumnsort contains a columnsort engine that stores the r x s matrix as
+ * a single flat int array in column-major order, i.e. column j occupies the
+ * index range [j * rows, (j + 1) * rows).
+ *
+ * Compared to the linked list representation in Prog3 there is no per-element
+ * node, so the matrix costs exactly 4 bytes per element plus one scratch array
+ * of the same size. The reshaping steps of the algorithm become index
+ * arithmetic:
+ * - transpose and reshape is a scatter into the scratch array
+ * - reshape and transpose is the inverse gather back into the matrix
+ * - shifting down by half a column, sorting, and shifting back up is the same
+ * as sorting the windows that straddle each pair of neighbouring columns, so
+ * no sentinel values or extra column are needed
+ *
+ * All state is passed in explicitly, so the engine is safe to call from
+ * several threads as long as each call has its own matrix and scratch array.
+ *
+ * The same engine is also specialised for long matrices, whose columns are
+ * sorted with Arrays.sort. See PrimitiveColumnsort for how doubles and
+ * (key, payload) records are mapped onto it.
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/Columnsort">Columnsort -
+ *      Wikipedia</a>
+ */
+public final class FlatColumnsort {
+
+  private FlatColumnsort() {
+  }
+
+  /**
+   * Sorts the first rows * cols elements of the matrix using the columnsort
+   * algorithm. The matrix is expected to satisfy the prerequisites of the
+   * algorithm (rows >= 2(cols - 1)^2 and cols divides rows).
+   *
+   * @param matrix  the column-major matrix to sort in place
+   * @param scratch a scratch array with room for at least rows * cols elements
+   * @param rows    the number of rows in the matrix
+   * @param cols    the number of columns in the matrix
+   * @param sorter  the kernel used to sort each column
+   * @param pool    pool used to sort the columns of each pass, or null to sort
+   *                serially
+   */
+  public static void columnsort(int[] matrix, int[] scratch, int rows, int cols, ColumnSorter sorter,
+      ForkJoinPool pool) {
+    columnsort(matrix, scratch, rows, cols, sorter, pool, null);
+  }
+
+  /**
+   * Sorts the first rows * cols elements of the matrix using the columnsort
+   * algorithm, recording each step with the profiler.
+   *
+   * @param matrix   the column-major matrix to sort in place
+   * @param scratch  a scratch array with room for at least rows * cols elements
+   * @param rows     the number of rows in the matrix
+   * @param cols     the number of columns in the matrix
+   * @param sorter   the kernel used to sort each column
+   * @param pool     pool used to sort the columns of each pass, or null to sort
+   *                 serially
+   * @param profiler profiler to record the steps with, or null
+   */
+  public static void columnsort(int[] matrix, int[] scratch, int rows, int cols, ColumnSorter sorter,
+      ForkJoinPool pool, StepProfiler profiler) {
+    long size = (long) rows * cols;
+    step(profiler, "sortColumns#1", StepProfiler.UNKNOWN,
+        () -> sortColumns(matrix, 0, rows, cols, sorter, pool));
+    step(profiler, "transposeAndReshape", size, () -> transposeAndReshape(matrix, scratch, rows, cols));
+    step(profiler, "sortColumns#2", StepProfiler.UNKNOWN,
+        () -> sortColumns(scratch, 0, rows, cols, sorter, pool));
+    step(profiler, "reshapeAndTranspose", size, () -> reshapeAndTranspose(scratch, matrix, rows, cols));
+    step(profiler, "sortColumns#3", StepProfiler.UNKNOWN,
+        () -> sortColumns(matrix, 0, rows, cols, sorter, pool));
+
+    // Shift down by half a column, sort, and shift back up
+    step(profiler, "sortShiftedColumns", StepProfiler.UNKNOWN,
+        () -> sortColumns(matrix, rows / 2, rows, cols - 1, sorter, pool));
+  }
+
+  /**
+   * Sorts the first rows * cols elements of the long matrix using the
+   * columnsort algorithm. See columnsort(int[], ...) for the prerequisites.
+   *
+   * @param matrix  the column-major matrix to sort in place
+   * @param scratch a scratch array with room for at least rows * cols elements
+   * @param rows    the number of rows in the matrix
+   * @param cols    the number of columns in the matrix
+   * @param pool    pool used to sort the columns of each pass, or null to sort
+   *                serially
+   */
+  public static void columnsort(long[] matrix, long[] scratch, int rows, int cols, ForkJoinPool pool) {
+    sortColumns(matrix, 0, rows, cols, pool);
+    transposeAndReshape(matrix, scratch, rows, cols);
+    sortColumns(scratch, 0, rows, cols, pool);
+    reshapeAndTranspose(scratch, matrix, rows, cols);
+    sortColumns(matrix, 0, rows, cols, pool);
+
+    // Shift down by half a column, sort, and shift back up
+    sortColumns(matrix, rows / 2, rows, cols - 1, pool);
+  }
+
+  /**
+   * Runs the step, recording it with the profiler if there is one.
+   *
+   * @param profiler profiler to record the step with, or null
+   * @param name     the name of the step in the report
+   * @param moves    the number of elements the step moves without comparing
+   *                 any, or StepProfiler.UNKNOWN for a column sort
+   * @param body     the step to run
+   */
+  private static void step(StepProfiler profiler, String name, long moves, Runnable body) {
+    if (profiler == null) {
+      body.run();
+      return;
+    }
+    profiler.record(name, () -> {
+      body.run();
+      if (moves != StepProfiler.UNKNOWN) {
+        profiler.addMoves(moves);
+        profiler.addComparisons(0);
+      }
+    });
+  }
+
+  /**
+   * Picks up the elements of the matrix in column-major order and lays them
+   * down in row-major order, which is the same as transposing the matrix and
+   * reshaping it back into rows x cols.
+   *
+   * The element at column-major index k lands in row k / cols and column
+   * k % cols of the destination.
+   *
+   * @param src  the column-major source matrix
+   * @param dst  the column-major destination matrix
+   * @param rows the number of rows in the matrix
+   * @param cols the number of columns in the matrix
+   */
+  static void transposeAndReshape(int[] src, int[] dst, int rows, int cols) {
+    int size = rows * cols;
+    int col = 0;
+    int row = 0;
+    for (int k = 0; k < size; k++) {
+      dst[col * rows + row] = src[k];
+      if (++col == cols) {
+        col = 0;
+        row++;
+      }
+    }
+  }
+
+  /**
+   * Inverse of transposeAndReshape. Picks up the elements of the matrix in
+   * row-major order and lays them down in column-major order.
+   *
+   * @param src  the column-major source matrix
+   * @param dst  the column-major destination matrix
+   * @param rows the number of rows in the matrix
+   * @param cols the number of columns in the matrix
+   */
+  static void reshapeAndTranspose(int[] src, int[] dst, int rows, int cols) {
+    int size = rows * cols;
+    int col = 0;
+    int row = 0;
+    for (int k = 0; k < size; k++) {
+      dst[k] = src[col * rows + row];
+      if (++col == cols) {
+        col = 0;
+        row++;
+      }
+    }
+  }
+
+  /**
+   * Long version of transposeAndReshape(int[], int[], int, int).
+   */
+  static void transposeAndReshape(long[] src, long[] dst, int rows, int cols) {
+    int size = rows * cols;
+    int col = 0;
+    int row = 0;
+    for (int k = 0; k < size; k++) {
+      dst[col * rows + row] = src[k];
+      if (++col == cols) {
+        col = 0;
+        row++;
+      }
+    }
+  }
+
+  /**
+   * Long version of reshapeAndTranspose(int[], int[], int, int).
+   */
+  static void reshapeAndTranspose(long[] src, long[] dst, int rows, int cols) {
+    int size = rows * cols;
+    int col = 0;
+    int row = 0;
+    for (int k = 0; k < size; k++) {
+      dst[k] = src[col * rows + row];
+      if (++col == cols) {
+        col = 0;
+        row++;
+      }
+    }
+  }
+
+  /**
+   * Sorts count consecutive columns of the given length, the first of which
+   * starts at offset.
+   *
+   * @param matrix the column-major matrix
+   * @param offset index of the first element of the first column
+   * @param length the number of elements in each column
+   * @param count  the number of columns to sort
+   * @param sorter the kernel used to sort each column
+   * @param pool   pool used to sort the columns, or null to sort serially
+   */
+  static void sortColumns(int[] matrix, int offset, int length, int count, ColumnSorter sorter,
+      ForkJoinPool pool) {
+    forEachColumn(count, pool, j -> {
+      int from = offset + j * length;
+      sorter.sort(matrix, from, from + length);
+    });
+  }
+
+  /**
+   * Long version of sortColumns(int[], ...), sorting each column with
+   * Arrays.sort.
+   *
+   * @param matrix the column-major matrix
+   * @param offset index of the first element of the first column
+   * @param length the number of elements in each column
+   * @param count  the number of columns to sort
+   * @param pool   pool used to sort the columns, or null to sort serially
+   */
+  static void sortColumns(long[] matrix, int offset, int length, int count, ForkJoinPool pool) {
+    forEachColumn(count, pool, j -> {
+      int from = offset + j * length;
+      Arrays.sort(matrix, from, from + length);
+    });
+  }
+
+  /**
+   * Runs the action on each column index in [0, count), on the pool if there
+   * is one and more than one column.
+   */
+  private static void forEachColumn(int count, ForkJoinPool pool, IntConsumer action) {
+    if (count <= 0) {
+      return;
+    }
+    if (pool != null && count > 1) {
+      pool.invoke(new SortColumnsTask(action, 0, count));
+      return;
+    }
+    for (int j = 0; j < count; j++) {
+      action.accept(j);
+    }
+  }
+
+  /**
+   * Fork/join task that sorts a contiguous range of columns of a flat matrix.
+   * The range is halved until a single column remains, which is then sorted on
+   * the current worker thread.
+   */
+  private static final class SortColumnsTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final IntConsumer sortColumn;
+    private final int start;
+    private final int end;
+
+    SortColumnsTask(IntConsumer sortColumn, int start, int end) {
+      this.sortColumn = sortColumn;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start == 1) {
+        sortColumn.accept(start);
+        return;
+      }
+      int mid = (start + end) >>> 1;
+      invokeAll(new SortColumnsTask(sortColumn, start, mid), new SortColumnsTask(sortColumn, mid, end));
+    }
+  }
+}
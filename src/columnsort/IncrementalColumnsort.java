@@ -0,0 +1,239 @@
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * IncrementalColumnsort keeps a sorted result that grows as batches of ints
+ * are appended, without sorting everything again for each batch.
+ *
+ * Each appended batch is:
+ * 1. copied into a buffer from the ScratchPool and sorted on its own with
+ * Columnsort, so only the new elements go through the matrix steps
+ * 2. merged into the sorted result from the largest element down, in place in
+ * the result array, which grows by half whenever it runs out of room
+ *
+ * The merge stops as soon as the whole batch has been placed, so the part of
+ * the result below the smallest element of the batch is never touched. When
+ * batches mostly hold newer, larger values (e.g. timestamps) only a short
+ * suffix of the result is rewritten. A batch of m elements appended to n sorted ones costs
+ * O(m log m) for the sort plus at most O(n + m) for the merge, instead of
+ * O((n + m) log(n + m)) for sorting from scratch.
+ *
+ * An instance is not thread-safe; appends must come from one thread at a time,
+ * and views must not be read during an append.
+ *
+ * Execution: java IncrementalColumnsort <output|-> <batch> [<batch> ...]
+ * Usage: Appends each batch file in turn (text, or binary by extension, see
+ *        InputLoader), printing the size and time after each, then writes the
+ *        sorted result to the output file, or to stdout as text for -.
+ */
+public final class IncrementalColumnsort {
+
+  /** Capacity of the result array when the first batch is appended */
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /** Largest result that can be backed by a single int array */
+  private static final int MAX_SIZE = Integer.MAX_VALUE - 8;
+
+  private final Columnsort columnsort;
+
+  /** The sorted result, whose first size elements are in use */
+  private int[] sorted = new int[0];
+  private int size;
+
+  /** Index of the first element moved by the last append */
+  private int lastChanged;
+
+  public static void main(String[] args) {
+    if (args.length < 2) {
+      System.out.println("Usage: java IncrementalColumnsort <output|-> <batch> [<batch> ...]");
+      System.exit(1);
+    }
+
+    IncrementalColumnsort incremental = new IncrementalColumnsort();
+    for (int i = 1; i < args.length; i++) {
+      int[] batch;
+      try {
+        batch = InputLoader.load(Paths.get(args[i]));
+      } catch (IOException | IllegalArgumentException e) {
+        System.out.println("Error reading file: " + e.getMessage());
+        System.exit(1);
+        return;
+      }
+
+      double startTime = System.nanoTime();
+      incremental.append(batch);
+      double endTime = System.nanoTime();
+
+      String formattedTime = String.format("%.3f", (endTime - startTime) / 1_000_000_000.0);
+      System.out.println("Batch " + i + ": n = " + incremental.size() + ", changed from index "
+          + incremental.lastChanged() + ", elapsed time = " + formattedTime + " seconds.");
+    }
+
+    System.out.flush();
+    Path output = args[0].equals("-") ? null : Paths.get(args[0]);
+    try (OutputWriter writer = output == null ? OutputWriter.toStdout(InputLoader.Format.TEXT)
+        : OutputWriter.toFile(output, InputLoader.Format.forFile(output))) {
+      writer.write(incremental.sorted, 0, incremental.size);
+    } catch (IOException e) {
+      System.out.println("Error writing output: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  /**
+   * Creates an empty result whose batches are sorted with the default
+   * Columnsort.
+   *
+   * @throws java.io.UncheckedIOException if the shared dimension table cannot
+   *                                      be loaded
+   */
+  public IncrementalColumnsort() {
+    this(new Columnsort());
+  }
+
+  /**
+   * Creates an empty result.
+   *
+   * @param columnsort the columnsort used to sort each batch
+   */
+  public IncrementalColumnsort(Columnsort columnsort) {
+    this.columnsort = columnsort;
+  }
+
+  /**
+   * Adds every element of the batch to the sorted result.
+   *
+   * @param batch the ints to add, which are left unchanged
+   * @return a read-only view of the updated sorted result
+   */
+  public IntBuffer append(int[] batch) {
+    return append(batch, 0, batch.length);
+  }
+
+  /**
+   * Adds the elements in the range [from, to) of the batch to the sorted
+   * result.
+   *
+   * @param batch the array holding the ints to add, which is left unchanged
+   * @param from  index of the first element to add, inclusive
+   * @param to    index of the last element to add, exclusive
+   * @return a read-only view of the updated sorted result
+   * @throws IndexOutOfBoundsException if the range is out of bounds
+   * @throws IllegalArgumentException  if the result would grow past the
+   *                                   largest int array
+   */
+  public IntBuffer append(int[] batch, int from, int to) {
+    int count = to - from;
+    if (from < 0 || to > batch.length || count < 0) {
+      throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for length "
+          + batch.length);
+    }
+    if (count > MAX_SIZE - size) {
+      throw new IllegalArgumentException("Sorted result too large: " + ((long) size + count));
+    }
+    if (count == 0) {
+      lastChanged = size;
+      return view();
+    }
+    ensureCapacity(size + count);
+
+    ScratchPool pool = ScratchPool.local();
+    int[] sortedBatch = pool.acquire(count);
+    try {
+      System.arraycopy(batch, from, sortedBatch, 0, count);
+      columnsort.sort(sortedBatch, 0, count, pool);
+      lastChanged = merge(sortedBatch, count);
+      size += count;
+    } finally {
+      pool.release(sortedBatch);
+    }
+    return view();
+  }
+
+  /**
+   * Returns the number of elements in the sorted result.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the element at the given position of the sorted result.
+   *
+   * @param index the position, from 0 for the smallest element
+   * @return the element
+   * @throws IndexOutOfBoundsException if the index is not below size()
+   */
+  public int get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+    return sorted[index];
+  }
+
+  /**
+   * Returns the index of the first element of the sorted result that the last
+   * append wrote to. Everything below it was left as it was.
+   */
+  public int lastChanged() {
+    return lastChanged;
+  }
+
+  /**
+   * Returns a read-only view of the sorted result. The view shares the result
+   * array and goes stale after the next append.
+   */
+  public IntBuffer view() {
+    return IntBuffer.wrap(sorted, 0, size).slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a copy of the sorted result.
+   */
+  public int[] toArray() {
+    return Arrays.copyOf(sorted, size);
+  }
+
+  /**
+   * Removes every element, keeping the result array for reuse.
+   */
+  public void clear() {
+    size = 0;
+    lastChanged = 0;
+  }
+
+  /**
+   * Merges the first count elements of the sorted batch into the result, from
+   * the largest element down. The result must have room for them.
+   *
+   * @param batch the sorted batch
+   * @param count the number of elements in the batch
+   * @return the index of the first element of the result written to
+   */
+  private int merge(int[] batch, int count) {
+    int[] sorted = this.sorted;
+    int i = size - 1;
+    int j = count - 1;
+    int k = size + count - 1;
+    while (j >= 0 && i >= 0) {
+      sorted[k--] = sorted[i] > batch[j] ? sorted[i--] : batch[j--];
+    }
+
+    // Whatever is left of the result is already in place
+    System.arraycopy(batch, 0, sorted, i + 1, j + 1);
+    return i + 1;
+  }
+
+  /**
+   * Grows the result array to hold at least capacity elements.
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > sorted.length) {
+      long grown = Math.max(INITIAL_CAPACITY, sorted.length + (sorted.length >> 1));
+      sorted = Arrays.copyOf(sorted, (int) Math.max(capacity, Math.min(grown, MAX_SIZE)));
+    }
+  }
+}
@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * InputLoader reads the array to be sorted straight from a memory-mapped file,
+ * without going through Strings or boxed Integers. Three formats are supported:
+ * - TEXT: ASCII integers separated by whitespace (one per line in the test
+ * data), parsed byte by byte from the mapped buffer
+ * - BINARY_BE: raw big-endian 32-bit ints, the format written by
+ * DataOutputStream.writeInt and read by ExternalColumnsort
+ * - BINARY_LE: raw little-endian 32-bit ints
+ *
+ * Binary files are bulk copied out of a mapped IntBuffer in the file's byte
+ * order. Text files are parsed in a single pass, copying the mapped bytes into
+ * a small reusable window first, which is much faster than reading the mapped
+ * buffer one byte at a time.
+ *
+ * Files larger than 1 GB are mapped one chunk at a time, since a single
+ * mapping cannot exceed 2 GB.
+ */
+public final class InputLoader {
+
+  /** Largest array that can be allocated */
+  private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /** Number of bytes mapped at a time, a multiple of Integer.BYTES */
+  private static final long CHUNK_SIZE = 1L << 30;
+
+  /** Number of bytes of a mapped chunk scanned at a time by the text parser */
+  private static final int WINDOW_SIZE = 1 << 16;
+
+  /** Initial guess at the bytes per token of a text file, digits and newline */
+  private static final int ESTIMATED_TOKEN_BYTES = 8;
+
+  /** Magnitude of Integer.MIN_VALUE, the largest magnitude a token may have */
+  private static final long MAX_MAGNITUDE = 1L << 31;
+
+  private InputLoader() {
+  }
+
+  /**
+   * The layout of an input file.
+   */
+  public enum Format {
+    TEXT, BINARY_BE, BINARY_LE;
+
+    /**
+     * Looks up a format by its command line name.
+     *
+     * @param name one of text, be or le
+     * @return the format with the given name
+     * @throws IllegalArgumentException if there is no format with that name
+     */
+    public static Format forName(String name) {
+      switch (name) {
+        case "text":
+          return TEXT;
+        case "be":
+          return BINARY_BE;
+        case "le":
+          return BINARY_LE;
+        default:
+          throw new IllegalArgumentException("Unknown input format: " + name);
+      }
+    }
+
+    /**
+     * Guesses the format of a file from its extension. Files ending in .bin or
+     * .be are big-endian binary, files ending in .le are little-endian binary,
+     * and anything else is text.
+     *
+     * @param path the file to be read
+     * @return the format implied by the file name
+     */
+    public static Format forFile(Path path) {
+      String name = path.getFileName().toString();
+      if (name.endsWith(".bin") || name.endsWith(".be")) {
+        return BINARY_BE;
+      }
+      if (name.endsWith(".le")) {
+        return BINARY_LE;
+      }
+      return TEXT;
+    }
+  }
+
+  /**
+   * Loads the integers in the file, choosing the format from its extension.
+   *
+   * @param path the file to be read
+   * @return the integers in the file, in file order
+   * @throws IOException              if the file cannot be read
+   * @throws NumberFormatException    if a text file contains anything other
+   *                                  than whitespace separated ints
+   * @throws IllegalArgumentException if a binary file is not a whole number of
+   *                                  ints or the file holds too many ints
+   */
+  public static int[] load(Path path) throws IOException {
+    return load(path, Format.forFile(path));
+  }
+
+  /**
+   * Loads the integers in the file, which must be in the given format.
+   *
+   * @param path   the file to be read
+   * @param format the layout of the file
+   * @return the integers in the file, in file order
+   * @throws IOException              if the file cannot be read
+   * @throws NumberFormatException    if a text file contains anything other
+   *                                  than whitespace separated ints
+   * @throws IllegalArgumentException if a binary file is not a whole number of
+   *                                  ints or the file holds too many ints
+   */
+  public static int[] load(Path path, Format format) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      switch (format) {
+        case BINARY_BE:
+          return loadBinary(channel, ByteOrder.BIG_ENDIAN);
+        case BINARY_LE:
+          return loadBinary(channel, ByteOrder.LITTLE_ENDIAN);
+        default:
+          return loadText(channel);
+      }
+    }
+  }
+
+  /**
+   * Copies the raw ints of the file into a new array.
+   */
+  private static int[] loadBinary(FileChannel channel, ByteOrder order) throws IOException {
+    long bytes = channel.size();
+    if (bytes % Integer.BYTES != 0) {
+      throw new IllegalArgumentException("Binary input is not a whole number of 32-bit ints");
+    }
+    long size = bytes / Integer.BYTES;
+    if (size > MAX_ARRAY_SIZE) {
+      throw new IllegalArgumentException("Input holds " + size + " ints, more than fit in an array");
+    }
+    int[] array = new int[(int) size];
+
+    int offset = 0;
+    for (long position = 0; position < bytes; position += CHUNK_SIZE) {
+      long length = Math.min(CHUNK_SIZE, bytes - position);
+      MappedByteBuffer chunk = channel.map(MapMode.READ_ONLY, position, length);
+      int count = (int) (length / Integer.BYTES);
+      chunk.order(order).asIntBuffer().get(array, offset, count);
+      offset += count;
+    }
+    return array;
+  }
+
+  /**
+   * Parses each whitespace separated token in the file as an int.
+   */
+  private static int[] loadText(FileChannel channel) throws IOException {
+    long bytes = channel.size();
+    byte[] window = new byte[WINDOW_SIZE];
+    TextScanner scanner = new TextScanner(bytes);
+
+    long offset = 0;
+    for (long position = 0; position < bytes; position += CHUNK_SIZE) {
+      MappedByteBuffer chunk = channel.map(MapMode.READ_ONLY, position, Math.min(CHUNK_SIZE, bytes - position));
+      while (chunk.hasRemaining()) {
+        int length = Math.min(window.length, chunk.remaining());
+        chunk.get(window, 0, length);
+        scanner.parse(window, length, offset);
+        offset += length;
+      }
+    }
+    return scanner.finish();
+  }
+
+  /**
+   * Parses the windows of a text file one after another. The state of the
+   * current token is kept between calls, so a token may straddle a window or
+   * chunk boundary.
+   *
+   * The parsed ints are stored in an array sized from an estimate of the
+   * number of tokens in the file. Whenever it fills up it is regrown using the
+   * average token length seen so far, so it is usually copied only once more,
+   * when it is trimmed to the exact size at the end.
+   */
+  private static final class TextScanner {
+    /** Size of the file in bytes */
+    private final long bytes;
+
+    private int[] array;
+    private int index;
+    private boolean inToken;
+    private boolean negative;
+    private long value;
+    private int digits;
+
+    TextScanner(long bytes) {
+      this.bytes = bytes;
+      this.array = new int[(int) Math.min(bytes / ESTIMATED_TOKEN_BYTES + 1, MAX_ARRAY_SIZE)];
+    }
+
+    /**
+     * Parses the first length bytes of the window, which start at the given
+     * byte offset of the file, storing each token that ends in it.
+     */
+    void parse(byte[] window, int length, long offset) {
+      // Work on locals so the loop does not write through to the fields
+      int[] array = this.array;
+      int index = this.index;
+      boolean inToken = this.inToken;
+      boolean negative = this.negative;
+      long value = this.value;
+      int digits = this.digits;
+      for (int i = 0; i < length; i++) {
+        int digit = window[i] - '0';
+        if (digit >= 0 && digit <= 9) {
+          value = value * 10 + digit;
+          digits++;
+          inToken = true;
+          if (value > MAX_MAGNITUDE) {
+            throw invalidNumber(offset + i, "value out of range for an int");
+          }
+        } else if (isWhitespace(window[i])) {
+          if (inToken) {
+            if (index == array.length) {
+              array = grow(index, offset + i);
+            }
+            array[index++] = toInt(value, negative, digits, offset + i);
+            inToken = false;
+            negative = false;
+            value = 0;
+            digits = 0;
+          }
+        } else if ((window[i] == '-' || window[i] == '+') && !inToken) {
+          inToken = true;
+          negative = window[i] == '-';
+        } else {
+          throw invalidNumber(offset + i, "unexpected character '" + (char) (window[i] & 0xff) + "'");
+        }
+      }
+      this.array = array;
+      this.index = index;
+      this.inToken = inToken;
+      this.negative = negative;
+      this.value = value;
+      this.digits = digits;
+    }
+
+    /**
+     * Stores the token at the end of the file, if any, and returns the parsed
+     * ints.
+     */
+    int[] finish() {
+      if (inToken) {
+        if (index == array.length) {
+          array = grow(index, bytes);
+        }
+        array[index++] = toInt(value, negative, digits, bytes);
+        inToken = false;
+      }
+      return index == array.length ? array : Arrays.copyOf(array, index);
+    }
+
+    /**
+     * Grows the full array to the number of tokens expected in the whole file,
+     * extrapolated from the count tokens found in the first offset bytes.
+     */
+    private int[] grow(int count, long offset) {
+      if (count == MAX_ARRAY_SIZE) {
+        throw new IllegalArgumentException("Input holds more ints than fit in an array");
+      }
+      long expected = (long) ((double) count * bytes / Math.max(offset, 1));
+      long capacity = Math.max(count + 1L, expected + expected / 16 + 16);
+      array = Arrays.copyOf(array, (int) Math.min(capacity, MAX_ARRAY_SIZE));
+      return array;
+    }
+  }
+
+  /**
+   * Converts the magnitude and sign of a completed token into an int.
+   *
+   * @param value    the magnitude of the token
+   * @param negative whether the token had a leading minus sign
+   * @param digits   the number of digits in the token
+   * @param offset   byte offset just past the end of the token, for errors
+   * @return the value of the token
+   * @throws NumberFormatException if the token is a bare sign or is out of
+   *                               range for an int
+   */
+  private static int toInt(long value, boolean negative, int digits, long offset) {
+    if (digits == 0) {
+      throw invalidNumber(offset, "sign without digits");
+    }
+    if (negative) {
+      return (int) -value;
+    }
+    if (value == MAX_MAGNITUDE) {
+      throw invalidNumber(offset, "value out of range for an int");
+    }
+    return (int) value;
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == '\n' || b == ' ' || b == '\r' || b == '\t';
+  }
+
+  private static NumberFormatException invalidNumber(long offset, String reason) {
+    return new NumberFormatException("Invalid integer at byte " + offset + ": " + reason);
+  }
+}
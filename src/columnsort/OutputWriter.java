@@ -0,0 +1,231 @@
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * OutputWriter streams a sorted array to a file or to stdout through a single
+ * large direct ByteBuffer, in any of the formats InputLoader reads:
+ * - TEXT: one ASCII integer per line, formatted into a small reusable window
+ * without going through Strings and bulk copied into the buffer
+ * - BINARY_BE and BINARY_LE: raw 32-bit ints, bulk copied into an IntBuffer
+ * view of the buffer in the requested byte order
+ *
+ * The buffer is drained to the channel whenever it fills up, so nothing is
+ * allocated per element and the writer can be reused for any number of
+ * arrays. This is far cheaper than System.out.println per element, which
+ * builds a String, encodes it and flushes for every line.
+ */
+public final class OutputWriter implements Closeable {
+
+  /** Size of the direct buffer in bytes, a multiple of Integer.BYTES */
+  private static final int BUFFER_SIZE = 1 << 20;
+
+  /** Size of the window text is formatted into before it is buffered */
+  private static final int WINDOW_SIZE = 1 << 16;
+
+  /** Longest text form of an int, "-2147483648", plus the newline */
+  private static final int MAX_LINE_BYTES = 12;
+
+  /** "00" to "99" back to back, so pair p starts at index 2p */
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+
+  static {
+    for (int p = 0; p < 100; p++) {
+      DIGIT_PAIRS[2 * p] = (byte) ('0' + p / 10);
+      DIGIT_PAIRS[2 * p + 1] = (byte) ('0' + p % 10);
+    }
+  }
+
+  private final WritableByteChannel channel;
+  private final InputLoader.Format format;
+  private final boolean closeChannel;
+  private final ByteBuffer buffer;
+
+  /** Text formatted since it was last copied into the buffer */
+  private final byte[] window = new byte[WINDOW_SIZE];
+
+  private OutputWriter(WritableByteChannel channel, InputLoader.Format format, boolean closeChannel) {
+    this.channel = channel;
+    this.format = format;
+    this.closeChannel = closeChannel;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+        .order(format == InputLoader.Format.BINARY_LE ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Opens a writer on the file, replacing it if it exists.
+   *
+   * @param path   the file to write to
+   * @param format the layout to write the ints in
+   * @return the writer, which closes the file when closed
+   * @throws IOException if the file cannot be opened
+   */
+  public static OutputWriter toFile(Path path, InputLoader.Format format) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+    return new OutputWriter(channel, format, true);
+  }
+
+  /**
+   * Opens a writer on stdout. Anything already printed through System.out
+   * should be flushed first, since the writer bypasses it.
+   *
+   * @param format the layout to write the ints in
+   * @return the writer, which leaves stdout open when closed
+   */
+  public static OutputWriter toStdout(InputLoader.Format format) {
+    return new OutputWriter(new FileOutputStream(FileDescriptor.out).getChannel(), format, false);
+  }
+
+  /**
+   * Writes every element of the array.
+   *
+   * @param array the ints to write
+   * @throws IOException if the output cannot be written
+   */
+  public void write(int[] array) throws IOException {
+    write(array, 0, array.length);
+  }
+
+  /**
+   * Writes the elements of the array in the range [from, to).
+   *
+   * @param array the ints to write
+   * @param from  index of the first element to write, inclusive
+   * @param to    index of the last element to write, exclusive
+   * @throws IOException if the output cannot be written
+   */
+  public void write(int[] array, int from, int to) throws IOException {
+    if (format == InputLoader.Format.TEXT) {
+      writeText(array, from, to);
+    } else {
+      writeBinary(array, from, to);
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the channel.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  public void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Flushes the buffered bytes and closes the file, if the writer opened one.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      if (closeChannel) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Copies the ints into the buffer as many at a time as fit.
+   */
+  private void writeBinary(int[] array, int from, int to) throws IOException {
+    while (from < to) {
+      if (buffer.remaining() < Integer.BYTES) {
+        flush();
+      }
+      int count = Math.min(to - from, buffer.remaining() / Integer.BYTES);
+      IntBuffer ints = buffer.asIntBuffer();
+      ints.put(array, from, count);
+      buffer.position(buffer.position() + count * Integer.BYTES);
+      from += count;
+    }
+  }
+
+  /**
+   * Formats each int followed by a newline into the window, and copies the
+   * window into the buffer whenever it fills up.
+   */
+  private void writeText(int[] array, int from, int to) throws IOException {
+    byte[] window = this.window;
+    int length = 0;
+    for (int i = from; i < to; i++) {
+      if (length > window.length - MAX_LINE_BYTES) {
+        put(window, length);
+        length = 0;
+      }
+      length = format(array[i], window, length);
+    }
+    put(window, length);
+  }
+
+  /**
+   * Copies the first length bytes of the window into the buffer.
+   */
+  private void put(byte[] window, int length) throws IOException {
+    if (buffer.remaining() < length) {
+      flush();
+    }
+    buffer.put(window, 0, length);
+  }
+
+  /**
+   * Formats the value and a newline into the window.
+   *
+   * @param value  the int to format
+   * @param window the array to format into
+   * @param offset index of the window to start at
+   * @return the index just past the newline
+   */
+  private static int format(int value, byte[] window, int offset) {
+    // Work on the negated value, since -Integer.MIN_VALUE does not fit in an int
+    int remaining = value < 0 ? value : -value;
+    if (value < 0) {
+      window[offset++] = '-';
+    }
+    int end = offset + digitCount(remaining);
+    window[end] = '\n';
+
+    // Two digits at a time from the right, then the one or two leading digits
+    int i = end;
+    while (remaining <= -100) {
+      int pair = -(remaining % 100) * 2;
+      remaining /= 100;
+      window[--i] = DIGIT_PAIRS[pair + 1];
+      window[--i] = DIGIT_PAIRS[pair];
+    }
+    if (remaining <= -10) {
+      int pair = -remaining * 2;
+      window[--i] = DIGIT_PAIRS[pair + 1];
+      window[--i] = DIGIT_PAIRS[pair];
+    } else {
+      window[--i] = (byte) ('0' - remaining);
+    }
+    return end + 1;
+  }
+
+  /**
+   * Returns the number of decimal digits in a non-positive value.
+   */
+  private static int digitCount(int negated) {
+    int count = 1;
+    for (int bound = -10; count < 10 && negated <= bound; bound *= 10) {
+      count++;
+    }
+    return count;
+  }
+}
@@ -0,0 +1,165 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * PrimitiveColumnsort sorts long arrays, double arrays and (key, payload)
+ * records with the flat columnsort engine, without boxing any element.
+ *
+ * Every variant is reduced to sorting a long matrix:
+ * - longs are sorted as they are
+ * - doubles are mapped to longs whose signed order matches Double.compare,
+ * sorted, and mapped back
+ * - records are packed into one long per record, the key in the high 32 bits
+ * and the payload in the low 32 bits, so sorting the longs sorts by key and
+ * carries each payload along with its key
+ *
+ * The matrix is planned with DimensionPlanner and padded with Long.MAX_VALUE,
+ * which sorts to the end and is dropped when the result is copied back.
+ */
+public final class PrimitiveColumnsort {
+
+  /** Inputs smaller than this are sorted directly with Arrays.sort */
+  private static final int MIN_SIZE = 8;
+
+  /** Mask of the low 32 bits of a long, which hold the payload of a record */
+  private static final long PAYLOAD_MASK = 0xFFFFFFFFL;
+
+  private PrimitiveColumnsort() {
+  }
+
+  /**
+   * Sorts the array in ascending order.
+   *
+   * @param array the array to sort
+   */
+  public static void sort(long[] array) {
+    sort(array, null);
+  }
+
+  /**
+   * Sorts the array in ascending order.
+   *
+   * @param array the array to sort
+   * @param pool  pool used to sort the columns of each pass, or null to sort
+   *              serially
+   */
+  public static void sort(long[] array, ForkJoinPool pool) {
+    if (array.length < MIN_SIZE) {
+      Arrays.sort(array);
+      return;
+    }
+    DimensionPlanner.Plan plan = DimensionPlanner.plan(array.length);
+    long[] matrix = Arrays.copyOf(array, plan.matrixSize());
+    columnsort(matrix, plan, pool);
+    System.arraycopy(matrix, 0, array, 0, array.length);
+  }
+
+  /**
+   * Sorts the array in the ascending order defined by Double.compare, so -0.0
+   * comes before 0.0 and NaN comes last. All NaNs are collapsed into the
+   * canonical NaN.
+   *
+   * @param array the array to sort
+   */
+  public static void sort(double[] array) {
+    sort(array, null);
+  }
+
+  /**
+   * Sorts the array in the ascending order defined by Double.compare.
+   *
+   * @param array the array to sort
+   * @param pool  pool used to sort the columns of each pass, or null to sort
+   *              serially
+   */
+  public static void sort(double[] array, ForkJoinPool pool) {
+    if (array.length < MIN_SIZE) {
+      Arrays.sort(array);
+      return;
+    }
+    DimensionPlanner.Plan plan = DimensionPlanner.plan(array.length);
+    long[] matrix = new long[plan.matrixSize()];
+    for (int i = 0; i < array.length; i++) {
+      matrix[i] = toSortableBits(array[i]);
+    }
+    columnsort(matrix, plan, pool);
+    for (int i = 0; i < array.length; i++) {
+      array[i] = fromSortableBits(matrix[i]);
+    }
+  }
+
+  /**
+   * Sorts the keys in ascending order, applying the same permutation to the
+   * payload array, i.e. payload[i] stays with keys[i]. Records with equal keys
+   * are ordered by payload, compared as unsigned ints.
+   *
+   * @param keys    the keys to sort by
+   * @param payload the values carried along with the keys, such as row ids
+   * @throws IllegalArgumentException if the arrays differ in length
+   */
+  public static void sort(int[] keys, int[] payload) {
+    sort(keys, payload, null);
+  }
+
+  /**
+   * Sorts the keys in ascending order, applying the same permutation to the
+   * payload array.
+   *
+   * @param keys    the keys to sort by
+   * @param payload the values carried along with the keys, such as row ids
+   * @param pool    pool used to sort the columns of each pass, or null to sort
+   *                serially
+   * @throws IllegalArgumentException if the arrays differ in length
+   */
+  public static void sort(int[] keys, int[] payload, ForkJoinPool pool) {
+    if (keys.length != payload.length) {
+      throw new IllegalArgumentException(
+          "Keys and payload differ in length: " + keys.length + " != " + payload.length);
+    }
+    int n = keys.length;
+    DimensionPlanner.Plan plan = DimensionPlanner.plan(n);
+    long[] matrix = new long[n < MIN_SIZE ? n : plan.matrixSize()];
+    for (int i = 0; i < n; i++) {
+      matrix[i] = (long) keys[i] << 32 | payload[i] & PAYLOAD_MASK;
+    }
+    if (n < MIN_SIZE) {
+      Arrays.sort(matrix);
+    } else {
+      columnsort(matrix, plan, pool);
+    }
+    for (int i = 0; i < n; i++) {
+      keys[i] = (int) (matrix[i] >> 32);
+      payload[i] = (int) matrix[i];
+    }
+  }
+
+  /**
+   * Pads the matrix past the input with Long.MAX_VALUE and sorts it.
+   *
+   * @param matrix the matrix, holding the input in its first plan.size
+   *               elements
+   * @param plan   the dimensions of the matrix
+   * @param pool   pool used to sort the columns, or null to sort serially
+   */
+  private static void columnsort(long[] matrix, DimensionPlanner.Plan plan, ForkJoinPool pool) {
+    Arrays.fill(matrix, plan.size, matrix.length, Long.MAX_VALUE);
+    FlatColumnsort.columnsort(matrix, new long[matrix.length], plan.rows, plan.cols, pool);
+  }
+
+  /**
+   * Maps a double to a long whose signed order matches Double.compare. The
+   * bits of negative doubles are flipped apart from the sign, which reverses
+   * their order; the mapping is its own inverse.
+   */
+  private static long toSortableBits(double value) {
+    long bits = Double.doubleToLongBits(value);
+    return bits ^ (bits >> 63 & Long.MAX_VALUE);
+  }
+
+  /**
+   * Inverse of toSortableBits.
+   */
+  private static double fromSortableBits(long bits) {
+    return Double.longBitsToDouble(bits ^ (bits >> 63 & Long.MAX_VALUE));
+  }
+}
@@ -14,22 +14,37 @@
  *       back into a single array. The algorithm also sorts the tail overflow partition of the
  *       original array separately. The tail should never have more than 4 elements for n < 8192.
  *       It is necessary to create the tail partition when the number of elements in the array is
- *       prime or otherwise invalid.
+ *       prime or otherwise invalid, unless --pad is given, in which case the matrix is padded
+ *       with Integer.MAX_VALUE sentinels instead and there is no tail.
  * Compilation: javac Prog3.java
- * Execution: java Prog3 <filename>
+ * Execution: java Prog3 <filename> [--parallel[=<threads>]] [--engine=<list|flat>] [--pad]
+ *            [--sorter=<insertion|quicksort|radix|heap|merge|adaptive|vector>] [--format=<text|be|le>]
+ *            [--output=<file|->] [--output-format=<text|be|le>] [--profile=<json|csv>]
  * Usage: Replace <filename> with the path to the file containing the array to be sorted. The
- *        file should contain one integer per line.
- * Example: java Prog3 data.txt
- * Features Not Implemented: Parallelized sorting of the columns
+ *        file should contain one integer per line, or raw 32-bit ints if it ends in .bin or .be
+ *        (big-endian) or .le (little-endian); --format overrides the extension. Pass --output to
+ *        write the sorted array to a file, or to stdout after the results for -, in the format
+ *        implied by its extension (text for stdout) unless --output-format is given. Pass
+ *        --profile to print the time, element moves, comparisons and allocated bytes of each
+ *        step of the algorithm to stderr as JSON or CSV (see StepProfiler). Pass --parallel to sort the columns of each
+ *        pass on a ForkJoinPool (defaults to one thread per available core). Pass --engine=flat
+ *        to store the matrix in a single flat int array (see FlatColumnsort) instead of linked
+ *        lists. Pass --sorter to choose the kernel used to sort each column (see
+ *        ColumnSorter); the default picks one by column length. The vector kernel needs
+ *        vector/VectorColumnSorter.java compiled and java --add-modules jdk.incubator.vector,
+ *        and falls back to the default otherwise.
+ * Example: java Prog3 data.txt --parallel=8 --engine=flat
+ * Features Not Implemented: None
  * 
  */
 
 import java.util.ArrayList;
-import java.util.stream.Stream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
@@ -56,7 +71,7 @@ import java.nio.file.Paths;
  */
 public class Prog3 {
   /** The input array to sort */
-  private static Integer[] arr;
+  private static int[] arr;
 
   /** Number of rows in the matrix */
   private static int rows;
@@ -73,28 +88,98 @@ public class Prog3 {
   /** Minimum input size for which full columnsort algorithm is used */
   private static final int MIN_SIZE = 8;
 
-  /** Total number of entries in the lookup table */
-  private static final int MAX_ENTRIES = 8192;
+  /** Minimum input size for which the columns are sorted in parallel */
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  /** Pool used to sort the columns of each pass, or null to sort serially */
+  private static ForkJoinPool pool;
+
+  /** Whether to use the flat int[] matrix engine instead of linked lists */
+  private static boolean flatEngine = false;
+
+  /** Whether to pad the matrix with sentinels instead of using a tail partition */
+  private static boolean padMatrix = false;
+
+  /** Kernel used to sort each column */
+  private static ColumnSorter sorter = ColumnSorter.ADAPTIVE;
+
+  /** Format of the input file, or null to go by its extension */
+  private static InputLoader.Format inputFormat = null;
+
+  /** File to write the sorted array to, "-" for stdout, or null for none */
+  private static String outputPath = null;
+
+  /** Format of the output, or null to go by its extension */
+  private static InputLoader.Format outputFormat = null;
+
+  /** Profiler recording each step of the algorithm, or null when not profiling */
+  private static StepProfiler profiler = null;
+
+  /** Format of the profile report, json or csv */
+  private static String profileFormat = null;
 
   public static void main(String[] args) {
+    parseOptions(args);
+
     // Read the input files and parse the data
     if (!parseDataFiles(args[0]))
       System.exit(1);
 
     /* ------------------------------ TIMED SECTION ----------------------------- */
     double startTime = System.nanoTime();
-    setMatrixDims(lut);
 
     // Set the matrix dims (r and s values)
+    step("setMatrixDims", () -> setMatrixDims());
 
     // Sort the array using the columnsort algorithm
-    columnsort();
+    if (flatEngine) {
+      flatColumnsort();
+    } else {
+      columnsort();
+    }
 
     double endTime = System.nanoTime();
     /* ---------------------------- END TIMED SECTION --------------------------- */
 
     // Print the matrix size, dimensions, and elapsed time
     printResults(startTime, endTime);
+    if (profiler != null) {
+      printProfile();
+    }
+  }
+
+  /**
+   * Sorts the array in place exactly as main does once the input is loaded,
+   * with any of the options main accepts after the filename. This lets the
+   * test suite (see tests/ColumnsortPropertyTest.java) run many inputs through
+   * both engines in one JVM. Like the rest of this class it is not
+   * thread-safe.
+   *
+   * @param array   the array to sort
+   * @param options command line options, e.g. --engine=flat or --pad
+   */
+  static void sort(int[] array, String... options) {
+    String[] args = new String[options.length + 1];
+    args[0] = "";
+    System.arraycopy(options, 0, args, 1, options.length);
+    if (pool != null) {
+      pool.shutdown();
+    }
+    pool = null;
+    flatEngine = false;
+    padMatrix = false;
+    sorter = ColumnSorter.ADAPTIVE;
+    profiler = null;
+    parseOptions(args);
+
+    table = DimensionTable.shared();
+    arr = array;
+    setMatrixDims();
+    if (flatEngine) {
+      flatColumnsort();
+    } else {
+      columnsort();
+    }
   }
 
   /**
@@ -109,49 +194,177 @@ public class Prog3 {
   private static final void columnsort() {
     // If size is < than minimum size, just insertion sort on a single column
     if (size < MIN_SIZE) {
-      insertionSort(arr, 0);
+      step("insertionSort", () -> insertionSort(arr, 0));
       return;
     }
 
     // Create the matrix from the input array
-    ArrayList<CDLinkedList> matrix = createMatrix(arr);
+    ArrayList<CDLinkedList> matrix = new ArrayList<>();
+    step("createMatrix", () -> matrix.addAll(createMatrix(arr)));
 
     // Follow the steps of the columnsort algorithm
-    sortColumns(matrix);
-    transposeAndReshape(matrix);
-    sortColumns(matrix);
-    reshapeAndTranspose(matrix);
-    sortColumns(matrix);
-    shiftDownHalfR(matrix);
-    sortColumns(matrix);
-    shiftUpHalfR(matrix);
-    sortColumns(matrix);
+    step("sortColumns#1", () -> sortColumns(matrix));
+    step("transposeAndReshape", () -> transposeAndReshape(matrix));
+    step("sortColumns#2", () -> sortColumns(matrix));
+    step("reshapeAndTranspose", () -> reshapeAndTranspose(matrix));
+    step("sortColumns#3", () -> sortColumns(matrix));
+    step("shiftDownHalfR", () -> shiftDownHalfR(matrix));
+    step("sortColumns#4", () -> sortColumns(matrix));
+    step("shiftUpHalfR", () -> shiftUpHalfR(matrix));
+    step("sortColumns#5", () -> sortColumns(matrix));
 
     // Sort the tail overflow of original array
-    insertionSort(arr, size - remainder);
+    step("sortOverflow", () -> insertionSort(arr, size - remainder));
 
     // Merge the matrix cols with the sorted overflow partition
-    mergeWithOverflow(arr, matrix);
+    step("mergeWithOverflow", () -> mergeWithOverflow(arr, matrix));
+  }
+
+  /**
+   * Runs a step of the algorithm, recording it with the profiler when
+   * profiling.
+   *
+   * @param name the name of the step in the profile report
+   * @param body the step to run
+   */
+  private static final void step(String name, Runnable body) {
+    if (profiler == null) {
+      body.run();
+    } else {
+      profiler.record(name, body);
+    }
+  }
+
+  /**
+   * Adds element moves and comparisons to the current step when profiling.
+   *
+   * @param moves       the number of elements moved
+   * @param comparisons the number of comparisons made
+   */
+  private static final void count(long moves, long comparisons) {
+    if (profiler != null) {
+      profiler.addMoves(moves);
+      profiler.addComparisons(comparisons);
+    }
+  }
+
+  /**
+   * Sorts the array using the columnsort algorithm on a flat int[] matrix (see
+   * FlatColumnsort). The matrix holds the first rows * cols elements of the
+   * array in column-major order and the remaining elements form the tail
+   * overflow partition, exactly as in columnsort(). Without padding the matrix
+   * is the front of the array itself, so the only other array is the scratch
+   * matrix. In padding mode the matrix is larger than the array and is a
+   * copy, whose extra cells hold Integer.MAX_VALUE, which sorts past the end
+   * of the array.
+   */
+  private static final void flatColumnsort() {
+    // If size is < than minimum size, just insertion sort on a single column
+    if (size < MIN_SIZE) {
+      step("insertionSort", () -> insertionSort(arr, 0));
+      return;
+    }
+
+    int matrixSize = rows * cols;
+    int[] matrix;
+    if (matrixSize <= size) {
+      matrix = arr;
+    } else {
+      matrix = new int[matrixSize];
+      step("createMatrix", () -> {
+        System.arraycopy(arr, 0, matrix, 0, size);
+        Arrays.fill(matrix, size, matrixSize, Integer.MAX_VALUE);
+        count(matrixSize, 0);
+      });
+    }
+    FlatColumnsort.columnsort(matrix, new int[matrixSize], rows, cols, sorter,
+        size >= PARALLEL_THRESHOLD ? pool : null, profiler);
+
+    // Sort the tail overflow of original array
+    int tailStart = Math.min(size, matrixSize);
+    step("sortOverflow", () -> insertionSort(arr, tailStart));
+
+    // Merge the sorted matrix with the sorted overflow partition
+    if (matrix == arr) {
+      step("mergeWithOverflow", () -> mergeWithOverflow(arr, tailStart));
+    } else {
+      step("mergeWithOverflow", () -> mergeWithOverflow(arr, matrix, tailStart));
+    }
+  }
+
+  /**
+   * Merges the sorted matrix at the front of the array, which ends at
+   * tailStart, with the sorted overflow partition after it. The overflow is
+   * copied out and the two are merged from the largest element down, so every
+   * write position is past the unread part of the matrix.
+   *
+   * @param array     the array holding the matrix and the overflow partition
+   * @param tailStart the index of the first overflow element of the array
+   */
+  private static final void mergeWithOverflow(int[] array, int tailStart) {
+    int[] tail = Arrays.copyOfRange(array, tailStart, size);
+    int i = tailStart - 1;
+    int j = tail.length - 1;
+    int k = size - 1;
+    while (i >= 0 && j >= 0) {
+      array[k--] = array[i] > tail[j] ? array[i--] : tail[j--];
+    }
+    long comparisons = size - 1 - k;
+
+    // Whatever is left of the matrix is already in place
+    while (j >= 0) {
+      array[k--] = tail[j--];
+    }
+    count(size - 1 - k + tail.length, comparisons);
+  }
+
+  /**
+   * Merges the sorted flat matrix with the sorted overflow partition of the
+   * array, which starts at tailStart, into the array. Every write position
+   * trails the unread part of the tail, so this can be done in place.
+   *
+   * @param array     the array holding the overflow partition
+   * @param matrix    the sorted matrix, whose first tailStart elements are
+   *                  merged
+   * @param tailStart the index of the first overflow element of the array
+   */
+  private static final void mergeWithOverflow(int[] array, int[] matrix, int tailStart) {
+    int i = 0;
+    int j = 0;
+    int k = tailStart;
+    while (j < tailStart && k < size) {
+      array[i++] = matrix[j] <= array[k] ? matrix[j++] : array[k++];
+    }
+    long comparisons = i;
+
+    // Whatever is left of the tail is already in place
+    while (j < tailStart) {
+      array[i++] = matrix[j++];
+    }
+    count(i, comparisons);
   }
 
   /**
    * Creates a matrix represented as an ArrayList of CDLinkedList objects from a
    * given array. The matrix is constructed with a specified number of columns
    * (COLS) and rows (ROWS). Each column is filled with elements from the input
-   * array in a column-major order.
+   * array in a column-major order. Cells past the end of the array (padding
+   * mode only) are filled with Integer.MAX_VALUE.
    *
    * @param array the input array from which the matrix is created
    * @return an ArrayList of CDLinkedList objects representing the matrix
    */
-  private static final ArrayList<CDLinkedList> createMatrix(Integer[] array) {
+  private static final ArrayList<CDLinkedList> createMatrix(int[] array) {
     ArrayList<CDLinkedList> matrix = new ArrayList<>(cols);
     for (int i = cols - 1; i >= 0; i--) {
       CDLinkedList col = new CDLinkedList();
       for (int j = 0; j < rows; j++) {
-        col.append(array[i * rows + j]);
+        int index = i * rows + j;
+        col.append(index < array.length ? array[index] : Integer.MAX_VALUE);
       }
       matrix.add(col);
     }
+    count((long) rows * cols, 0);
     return matrix;
   }
 
@@ -161,10 +374,12 @@ public class Prog3 {
    * @param array          the array to be sorted
    * @param partitionStart the starting index of the partition to be sorted
    */
-  private static final void insertionSort(Integer[] array, int partitionStart) {
+  private static final void insertionSort(int[] array, int partitionStart) {
+    long moves = 0;
+    long comparisons = 0;
     for (int i = partitionStart + 1; i < array.length; i++) {
-      Integer key = array[i];
-      Integer j = i - 1;
+      int key = array[i];
+      int j = i - 1;
 
       while (j >= partitionStart && array[j] > key) {
         array[j + 1] = array[j];
@@ -172,109 +387,227 @@ public class Prog3 {
       }
 
       array[j + 1] = key;
+      moves += i - j;
+      comparisons += j >= partitionStart ? i - j : i - j - 1;
     }
+    count(moves, comparisons);
   }
 
   /**
    * Transposes and reshapes the given matrix represented as an ArrayList of
-   * CDLinkedList. The method iterates through the columns and rows of the matrix,
-   * adjusting the elements by popping and prepending values from the linked
-   * lists. The end result is as if the matrix was transposed and then reshaped so
-   * every two columns were concatenated.
+   * CDLinkedList. The elements are picked up in column-major order and laid down
+   * in row-major order, so the element at column-major index k moves to row
+   * k / cols of column k % cols. The end result is as if the matrix was
+   * transposed and then reshaped back into rows x cols.
+   * 
+   * The indices are walked backwards so every node can be popped from the right
+   * of its column and prepended to its new column without disturbing the order
+   * of the remaining nodes. Note that column c is stored at index cols - 1 - c.
    *
    * @param matrix the matrix to be transposed and reshaped, represented as an
    *               ArrayList of CDLinkedList
    */
   private static final void transposeAndReshape(ArrayList<CDLinkedList> matrix) {
-    for (int i = 0; i < matrix.size(); i++) {
-      for (int j = 0; j < cols; j++) {
-        int targetIndex = j % matrix.size();
-        matrix.get(targetIndex).prepend(matrix.get(i).popRight());
-      }
+    ArrayList<CDLinkedList> result = createEmptyMatrix();
+    for (int k = rows * cols - 1; k >= 0; k--) {
+      Node node = matrix.get(cols - 1 - k / rows).popRight();
+      result.get(cols - 1 - k % cols).prepend(node);
+    }
+    for (int i = 0; i < cols; i++) {
+      matrix.set(i, result.get(i));
     }
+    count((long) rows * cols, 0);
   }
 
   /**
    * Reshapes and transposes the given matrix represented as an ArrayList of
-   * CDLinkedList. The method iterates through the columns and rows of the matrix,
-   * adjusting the elements by appending and popping values from the linked lists.
+   * CDLinkedList. This is the inverse of transposeAndReshape: the elements are
+   * picked up in row-major order and laid down in column-major order, so the
+   * element at column-major index k comes from row k / cols of column k % cols.
    * 
-   * The end result is as if the matrix was reshaped so every two rows were
-   * concatenated and then the matrix was transposed.
+   * The end result is as if the matrix was reshaped into cols x rows and then
+   * transposed.
    *
    * @param matrix the matrix to be reshaped and transposed, represented as an
    *               ArrayList of CDLinkedList
    */
   private static final void reshapeAndTranspose(ArrayList<CDLinkedList> matrix) {
-    for (int i = cols - 1; i >= 0; i--) {
-      for (int j = 0; j < rows; j++) {
-        int offset = j % cols;
-        int targetIndex = cols - 1 - offset;
-        matrix.get(i).append(matrix.get(targetIndex).popLeft().value);
-      }
+    ArrayList<CDLinkedList> result = createEmptyMatrix();
+    for (int k = rows * cols - 1; k >= 0; k--) {
+      Node node = matrix.get(cols - 1 - k % cols).popRight();
+      result.get(cols - 1 - k / rows).prepend(node);
+    }
+    for (int i = 0; i < cols; i++) {
+      matrix.set(i, result.get(i));
+    }
+    count((long) rows * cols, 0);
+  }
+
+  /**
+   * Creates a matrix of cols empty columns.
+   *
+   * @return an ArrayList of empty CDLinkedList objects
+   */
+  private static final ArrayList<CDLinkedList> createEmptyMatrix() {
+    ArrayList<CDLinkedList> matrix = new ArrayList<>(cols);
+    for (int i = 0; i < cols; i++) {
+      matrix.add(new CDLinkedList());
     }
+    return matrix;
   }
 
   /**
    * Sorts the columns of a matrix represented as an ArrayList of CDLinkedList
    * objects. Each CDLinkedList represents a column in the matrix, and each column
-   * is sorted in ascending order. The sorting is performed using an in-place
-   * insertion sort algorithm on the doubly circular linked list.
+   * is sorted in ascending order.
+   * 
+   * The columns are independent of one another, so when a pool has been
+   * configured and the input is at least PARALLEL_THRESHOLD elements they are
+   * sorted concurrently. Smaller inputs are sorted serially since the cost of
+   * forking the tasks outweighs the work being split.
    *
    * @param matrix An ArrayList of CDLinkedList objects, where each CDLinkedList
    *               represents a column in the matrix.
    */
   private static final void sortColumns(ArrayList<CDLinkedList> matrix) {
-    for (CDLinkedList row : matrix) {
-      Node sortedTail = row.head; // Start with the first node as the sorted portion
-      Node unsorted = row.head.next;
-
-      while (unsorted != row.head) { // Stop when we circle back to the head
-        Node next = unsorted.next;
+    if (pool != null && size >= PARALLEL_THRESHOLD) {
+      pool.invoke(new SortColumnsTask(matrix, 0, matrix.size()));
+      return;
+    }
 
-        if (unsorted.value < sortedTail.value) {
-          // Remove unsorted node from its current position
-          unsorted.prev.next = unsorted.next;
-          unsorted.next.prev = unsorted.prev;
+    for (CDLinkedList col : matrix) {
+      sortColumn(col);
+    }
+  }
 
-          // Insert unsorted node into the sorted portion
-          Node current = sortedTail;
+  /**
+   * Sorts a single column in ascending order with the configured kernel. The
+   * insertion sort kernel runs in place on the linked list; any other kernel
+   * sorts a copy of the column values, which are then written back into the
+   * nodes in order. The copy is taken from the ScratchPool of the calling
+   * thread, so the columns of every pass share one array per thread.
+   *
+   * @param col the column to be sorted
+   */
+  private static final void sortColumn(CDLinkedList col) {
+    if (sorter == ColumnSorter.INSERTION) {
+      insertionSortColumn(col);
+      return;
+    }
 
-          // Find the correct insertion point by moving backward
-          while (current != row.head && unsorted.value <= current.value) {
-            current = current.prev;
-          }
+    ScratchPool scratch = ScratchPool.local();
+    int[] values = scratch.acquire(rows);
+    try {
+      int length = 0;
+      Node node = col.head;
+      do {
+        values[length++] = node.value;
+        node = node.next;
+      } while (node != col.head);
+
+      sorter.sort(values, 0, length);
+
+      for (int i = 0; i < length; i++) {
+        node.value = values[i];
+        node = node.next;
+      }
+    } finally {
+      scratch.release(values);
+    }
+  }
 
-          if (current == row.head && unsorted.value < current.value) {
-            // Insert at the beginning, before head
-            unsorted.prev = row.head.prev;
-            unsorted.next = row.head;
-            row.head.prev.next = unsorted;
-            row.head.prev = unsorted;
-            row.head = unsorted; // Update head to the new start of the row
-          } else {
-            // Insert after current node
-            unsorted.next = current.next;
-            unsorted.prev = current;
-            current.next.prev = unsorted;
-            current.next = unsorted;
-          }
+  /**
+   * Sorts a single column in ascending order using an in-place insertion sort
+   * algorithm on the doubly circular linked list.
+   *
+   * @param row the column to be sorted
+   */
+  private static final void insertionSortColumn(CDLinkedList row) {
+    Node sortedTail = row.head; // Start with the first node as the sorted portion
+    Node unsorted = row.head.next;
+    long moves = 0;
+    long comparisons = 0;
+
+    while (unsorted != row.head) { // Stop when we circle back to the head
+      Node next = unsorted.next;
+
+      comparisons++;
+      if (unsorted.value < sortedTail.value) {
+        moves++;
+
+        // Remove unsorted node from its current position
+        unsorted.prev.next = unsorted.next;
+        unsorted.next.prev = unsorted.prev;
+
+        // Insert unsorted node into the sorted portion
+        Node current = sortedTail;
+
+        // Find the correct insertion point by moving backward
+        while (current != row.head && unsorted.value <= current.value) {
+          comparisons++;
+          current = current.prev;
+        }
+        comparisons++;
+
+        if (current == row.head && unsorted.value < current.value) {
+          // Insert at the beginning, before head
+          unsorted.prev = row.head.prev;
+          unsorted.next = row.head;
+          row.head.prev.next = unsorted;
+          row.head.prev = unsorted;
+          row.head = unsorted; // Update head to the new start of the row
         } else {
-          sortedTail = unsorted;
+          // Insert after current node
+          unsorted.next = current.next;
+          unsorted.prev = current;
+          current.next.prev = unsorted;
+          current.next = unsorted;
         }
+      } else {
+        sortedTail = unsorted;
+      }
+
+      unsorted = next; // Move to the next node in the unsorted portion
+    }
+    count(moves, comparisons);
+  }
+
+  /**
+   * Fork/join task that sorts a contiguous range of columns of the matrix. The
+   * range is halved until a single column remains, which is then sorted on the
+   * current worker thread.
+   */
+  private static final class SortColumnsTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final ArrayList<CDLinkedList> matrix;
+    private final int start;
+    private final int end;
+
+    SortColumnsTask(ArrayList<CDLinkedList> matrix, int start, int end) {
+      this.matrix = matrix;
+      this.start = start;
+      this.end = end;
+    }
 
-        unsorted = next; // Move to the next node in the unsorted portion
+    @Override
+    protected void compute() {
+      if (end - start == 1) {
+        sortColumn(matrix.get(start));
+        return;
       }
+      int mid = (start + end) >>> 1;
+      invokeAll(new SortColumnsTask(matrix, start, mid), new SortColumnsTask(matrix, mid, end));
     }
   }
 
   /**
-   * Shifts each column down by half the number of rows minus one. Elements
+   * Shifts each column down by half the number of rows. Elements
    * shifted past the last spot in their column are popped and prepended to the
    * next column.
    * 
    * This method performs the following operations:
-   * - Calculates the shift amount as half the number of rows minus one
+   * - Calculates the shift amount as half the number of rows
    * - For each column (except the first), it pops the calculated number of
    * elements from the end and prepends them to the next column.
    * - Removes the calculated number of padding values from the last
@@ -284,7 +617,7 @@ public class Prog3 {
    *               CDLinkedList.
    */
   private static final void shiftDownHalfR(ArrayList<CDLinkedList> matrix) {
-    int shift = (rows / 2) - 1;
+    int shift = rows / 2;
     int originalColCt = matrix.size();
 
     // Add a new col to front
@@ -306,15 +639,16 @@ public class Prog3 {
       matrix.get(0).append(Integer.MAX_VALUE);
       matrix.get(lastIndex).prepend(new Node(Integer.MIN_VALUE));
     }
+    count((long) shift * (originalColCt + 2), 0);
   }
 
   /**
-   * Shifts each column up by half the number of rows minus one. Elements shifted
+   * Shifts each column up by half the number of rows. Elements shifted
    * past the first spot in their column are popped and appended to the previous
    * column.
    * 
    * This method performs the following operations:
-   * - Calculates the shift amount as half the number of rows minus one
+   * - Calculates the shift amount as half the number of rows
    * - For each column (except the last), it pops the calculated number of
    * elements from the end and appends them to the previous column.
    * - Removes the calculated number of padding values from the first column
@@ -323,7 +657,7 @@ public class Prog3 {
    *               CDLinkedList.
    */
   private static final void shiftUpHalfR(ArrayList<CDLinkedList> matrix) {
-    int shift = (rows / 2) - 1;
+    int shift = rows / 2;
     int originalColCt = matrix.size();
 
     // For first n - 1 cols, pop `shift` values from the end and prepend to the
@@ -339,6 +673,7 @@ public class Prog3 {
     for (int i = 0; i < shift; i++) {
       matrix.get(0).popRight();
     }
+    count((long) shift * originalColCt, 0);
   }
 
   /**
@@ -358,7 +693,7 @@ public class Prog3 {
    * @param array  the array containing overflow elements to be merged
    * @param matrix the matrix of doubly circular linked lists to be merged
    */
-  private static void mergeWithOverflow(Integer[] array, ArrayList<CDLinkedList> matrix) {
+  private static void mergeWithOverflow(int[] array, ArrayList<CDLinkedList> matrix) {
     int curOverflowIdx = size - remainder;
     int curOverflowVal = curOverflowIdx < size ? array[curOverflowIdx] : Integer.MAX_VALUE;
 
@@ -366,8 +701,12 @@ public class Prog3 {
     // second-to-last column
     int curColIndex = matrix.size() - 2;
     int curColVal = curColIndex >= 0 ? matrix.get(curColIndex).popLeft().value : Integer.MAX_VALUE;
+    long comparisons = 0;
 
     for (int i = 0; i < size; i++) {
+      if (curColIndex >= 0) {
+        comparisons++;
+      }
       if (curColIndex >= 0 && curColVal < curOverflowVal) {
         array[i] = curColVal;
         if (matrix.get(curColIndex).head == null) {
@@ -390,6 +729,7 @@ public class Prog3 {
         }
       }
     }
+    count(size, comparisons);
   }
 
   /**
@@ -408,9 +748,49 @@ public class Prog3 {
     System.out.println("Elapsed time = " + formattedTime + " seconds.");
 
     // Print the sorted array
-    // for (int i = 0; i < arr.length; i++) {
-    // System.out.println(arr[i]);
-    // }
+    if (outputPath != null) {
+      writeOutput();
+    }
+  }
+
+  /**
+   * Prints the profile of each step to stderr, so it stays apart from the
+   * results and any sorted output on stdout.
+   */
+  private static final void printProfile() {
+    if (profileFormat.equals("csv")) {
+      System.err.print(profiler.toCsv());
+      return;
+    }
+    profiler.attribute("n", size);
+    profiler.attribute("r", rows);
+    profiler.attribute("s", cols);
+    profiler.attribute("remainder", remainder);
+    profiler.attribute("engine", flatEngine ? "flat" : "list");
+    profiler.attribute("parallelism", pool == null ? 1 : pool.getParallelism());
+    System.err.println(profiler.toJson());
+  }
+
+  /**
+   * Writes the sorted array to the output file, or to stdout if the output is
+   * "-". Exits the program if the output cannot be written.
+   */
+  private static final void writeOutput() {
+    boolean stdout = outputPath.equals("-");
+    InputLoader.Format format = outputFormat;
+    if (format == null) {
+      format = stdout ? InputLoader.Format.TEXT : InputLoader.Format.forFile(Paths.get(outputPath));
+    }
+
+    // The writer bypasses System.out, so anything printed so far must go first
+    System.out.flush();
+    try (OutputWriter writer = stdout ? OutputWriter.toStdout(format)
+        : OutputWriter.toFile(Paths.get(outputPath), format)) {
+      writer.write(arr);
+    } catch (IOException e) {
+      System.out.println("Error writing output: " + e.getMessage());
+      System.exit(1);
+    }
   }
 
   /**
@@ -543,54 +923,134 @@ public class Prog3 {
     }
   }
 
-  private static int[][] lut = new int[MAX_ENTRIES][3];
+  /** Table of matrix dimensions by input size, shared with Columnsort */
+  private static DimensionTable table;
 
   /**
    * Sets the matrix dimensions based on the size of the input array and the
-   * lookup table values.
-   *
-   * @param lut the lookup table containing the r, s, and overflow values
+   * dimension table, which holds the lookup table values and plans sizes past
+   * its end at runtime (see DimensionPlanner) so the overflow partition stays
+   * small. In padding mode every size is planned so the matrix covers the whole
+   * array.
    */
-  private static final void setMatrixDims(int[][] lut) {
+  private static final void setMatrixDims() {
     size = arr.length;
-    rows = size < MAX_ENTRIES ? lut[size][0] : lut[MAX_ENTRIES - 1][0];
-    cols = size < MAX_ENTRIES ? lut[size][1] : lut[MAX_ENTRIES - 1][1];
-    remainder = size < MAX_ENTRIES ? lut[size][2] : size - MAX_ENTRIES;
-    // rows = 20000;
-    // cols = 50;
-    // remainder = 0;
+    DimensionPlanner.Plan plan = padMatrix ? DimensionPlanner.plan(size) : table.plan(size);
+    rows = plan.rows;
+    cols = plan.cols;
+    remainder = plan.remainder();
   }
 
   /**
-   * Parses the data files containing the input array and the lookup table.
+   * Parses the command line options following the input filename. Exits the
+   * program with a usage message if the arguments are invalid.
+   * 
+   * Options:
+   * - --parallel: sort the columns on a pool with one thread per core
+   * - --parallel=N: sort the columns on a pool with N threads
+   * - --engine=list|flat: store the matrix as linked lists or a flat int[]
+   * - --pad: pad the matrix with sentinels instead of using a tail partition
+   * - --sorter=NAME: sort each column with the named ColumnSorter kernel
+   * - --format=text|be|le: read the input as text or big/little-endian ints
+   * - --output=FILE: write the sorted array to FILE, or to stdout for -
+   * - --output-format=text|be|le: write the output as text or big/little-endian
+   * ints
+   * - --profile=json|csv: print a per-step profile of the sort to stderr
+   *
+   * @param args the command line arguments
+   */
+  private static final void parseOptions(String[] args) {
+    if (args.length < 1) {
+      System.out.println("Usage: java Prog3 <filename> [--parallel[=<threads>]] [--engine=<list|flat>] [--pad] [--sorter=<name>] [--format=<text|be|le>] [--output=<file|->] [--output-format=<text|be|le>] [--profile=<json|csv>]");
+      System.exit(1);
+    }
+
+    for (int i = 1; i < args.length; i++) {
+      if (args[i].equals("--parallel")) {
+        pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+      } else if (args[i].startsWith("--parallel=")) {
+        int threads = 0;
+        try {
+          threads = Integer.parseInt(args[i].substring("--parallel=".length()));
+        } catch (NumberFormatException e) {
+          // Handled by the range check below
+        }
+        if (threads < 1) {
+          System.out.println("Error: Parallelism must be a positive integer.");
+          System.exit(1);
+        }
+        pool = new ForkJoinPool(threads);
+      } else if (args[i].equals("--engine=list")) {
+        flatEngine = false;
+      } else if (args[i].equals("--engine=flat")) {
+        flatEngine = true;
+      } else if (args[i].equals("--pad")) {
+        padMatrix = true;
+      } else if (args[i].startsWith("--sorter=")) {
+        try {
+          sorter = ColumnSorter.forName(args[i].substring("--sorter=".length()));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Error: " + e.getMessage());
+          System.exit(1);
+        }
+      } else if (args[i].startsWith("--format=")) {
+        try {
+          inputFormat = InputLoader.Format.forName(args[i].substring("--format=".length()));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Error: " + e.getMessage());
+          System.exit(1);
+        }
+      } else if (args[i].startsWith("--output=")) {
+        outputPath = args[i].substring("--output=".length());
+        if (outputPath.isEmpty()) {
+          System.out.println("Error: Output must be a file name or -");
+          System.exit(1);
+        }
+      } else if (args[i].equals("--profile=json") || args[i].equals("--profile=csv")) {
+        profiler = new StepProfiler();
+        profileFormat = args[i].substring("--profile=".length());
+      } else if (args[i].startsWith("--output-format=")) {
+        try {
+          outputFormat = InputLoader.Format.forName(args[i].substring("--output-format=".length()));
+        } catch (IllegalArgumentException e) {
+          System.out.println("Error: " + e.getMessage());
+          System.exit(1);
+        }
+      } else {
+        System.out.println("Error: Unknown option " + args[i]);
+        System.exit(1);
+      }
+    }
+  }
+
+  /**
+   * Parses the data file containing the input array and opens the dimension
+   * table.
    *
    * @param filename the name of the file containing the input array
    * @return true if the files were successfully parsed, false otherwise
    */
   private static boolean parseDataFiles(String filename) {
-    try (Stream<String> lines = Files.lines(Paths.get(filename))) {
-      arr = lines
-          .map(Integer::parseInt) // Map each line to Integer
-          .toArray(Integer[]::new); // Collect as Integer[]
+    try {
+      Path path = Paths.get(filename);
+      arr = InputLoader.load(path, inputFormat != null ? inputFormat : InputLoader.Format.forFile(path));
     } catch (IOException e) {
       System.out.println("Error reading file: " + e.getMessage());
       return false;
     } catch (NumberFormatException e) {
       System.out.println("File contains invalid number format: " + e.getMessage());
       return false;
+    } catch (IllegalArgumentException e) {
+      System.out.println("Error reading file: " + e.getMessage());
+      return false;
     }
 
     // Pre-computed (input array size -> matrix dimensions) mappings are stored in a
-    // binary file so as not to over-clutter the source code. It is the same as
-    // hard-coding the values directly in the source code.
-    try (DataInputStream dis = new DataInputStream(new FileInputStream("lookupTable.bin"))) {
-      // Populate the array directly
-      for (int i = 0; i < MAX_ENTRIES; i++) {
-        lut[i][0] = dis.readInt();
-        lut[i][1] = dis.readInt();
-        lut[i][2] = dis.readInt();
-      }
-    } catch (IOException e) {
+    // binary file so as not to over-clutter the source code. The file is generated
+    // on first use and memory-mapped after that (see DimensionTable).
+    try {
+      table = DimensionTable.shared();
+    } catch (UncheckedIOException e) {
       e.printStackTrace();
       return false;
     }
@@ -25,12 +25,9 @@ import java.util.HashMap;
  */
 
 import java.util.ArrayList;
-import java.util.stream.Stream;
+import java.util.Arrays;
 import java.util.Optional;
 import java.io.IOException;
-import java.io.DataInputStream;
-import java.io.FileInputStream;
-import java.nio.file.Files;
 import java.nio.file.Paths;
 
 /**
@@ -71,26 +68,32 @@ public class Prog3Testing {
   /** Minimum matrix size for which columnsort is used */
   private static final int MIN_MATRIX_SIZE = 8;
 
-  /** Total number of entries in the lookup table */
-  private static final int TOTAL_ENTRIES = 16384;
+  /**
+   * Nodes of the linked list matrix, reused by every run of columnsort so the
+   * benchmark does not allocate (and garbage collect) a node per element per
+   * run. The first nextNode nodes are in use by the current run.
+   */
+  private static Node[] nodes = new Node[0];
+  private static int nextNode;
 
   public static void main(String[] args) {
     // Read the input file and parse the data
     String filename = args[0];
     arr = parseDataFile(filename).orElseThrow(RuntimeException::new);
-    int[][] lut = loadLookupTable("lookupTable.bin");
+    DimensionTable table = DimensionTable.shared();
 
     /* ------------------------------ TIMED SECTION ----------------------------- */
     double startTime = System.nanoTime();
 
-    // Get the r and s values from the lookup table
+    // Get the r and s values from the dimension table (same table as Prog3)
     size = arr.length;
-    rows = size < TOTAL_ENTRIES ? lut[size][0] : lut[TOTAL_ENTRIES - 1][0];
-    cols = size < TOTAL_ENTRIES ? lut[size][1] : lut[TOTAL_ENTRIES - 1][1];
-    remainder = size < TOTAL_ENTRIES ? lut[size][2] : size - TOTAL_ENTRIES;
+    DimensionPlanner.Plan plan = table.plan(size);
+    rows = plan.rows;
+    cols = plan.cols;
+    remainder = plan.remainder();
 
     // Sort the array using the columnsort algorithm and measure the elapsed time
-    double time = SortingAlgs.getAverageTime(arr, Prog3::columnsort);
+    double time = SortingAlgs.getAverageTime(arr, Prog3Testing::columnsort);
     // columnsort();
 
     double endTime = System.nanoTime();
@@ -104,11 +107,30 @@ public class Prog3Testing {
 
     // benchmarks.put("columnsort", (endTime - startTime) / 1_000_000.0);
     benchmarks.put("columnsort", time);
+    benchmarks.put("columnsort (flat, pooled)", SortingAlgs.getAverageTime(arr, new Columnsort()::sort));
     SortingAlgs.printTableResults(benchmarks);
 
-    // Print the sorted array
-    for (int i = 0; i < arr.length; i++) {
-      // System.out.println(arr[i]);
+    // Write the sorted array if an output file (or - for stdout) was given.
+    // The benchmarks sort copies, so sort the array itself once first.
+    if (args.length > 1) {
+      columnsort(arr);
+      writeOutput(args[1]);
+    }
+  }
+
+  /**
+   * Writes the array to the output file in the format implied by its
+   * extension, or to stdout as text if the output is "-".
+   *
+   * @param output the name of the output file, or "-" for stdout
+   */
+  public static void writeOutput(String output) {
+    System.out.flush();
+    try (OutputWriter writer = output.equals("-") ? OutputWriter.toStdout(InputLoader.Format.TEXT)
+        : OutputWriter.toFile(Paths.get(output), InputLoader.Format.forFile(Paths.get(output)))) {
+      writer.write(arr);
+    } catch (IOException e) {
+      System.out.println("Error writing output: " + e.getMessage());
     }
   }
 
@@ -128,7 +150,8 @@ public class Prog3Testing {
       return;
     }
 
-    // Create the matrix from the input array
+    // Create the matrix from the input array, recycling the nodes of the last run
+    nextNode = 0;
     ArrayList<DCLinkedList> matrix = createMatrix(arr);
 
     // Follow the steps of the columnsort algorithm
@@ -167,6 +190,29 @@ public class Prog3Testing {
     }
   }
 
+  /**
+   * Returns an unlinked node holding the value, taken from the nodes left over
+   * from earlier runs of columnsort if there are any. The node array grows by
+   * half whenever a run needs more nodes than any run before it.
+   *
+   * @param value the value of the node
+   * @return the node
+   */
+  private static final Node newNode(int value) {
+    if (nextNode == nodes.length) {
+      Node[] grown = Arrays.copyOf(nodes, Math.max(16, nodes.length + (nodes.length >> 1)));
+      for (int i = nodes.length; i < grown.length; i++) {
+        grown[i] = new Node(0);
+      }
+      nodes = grown;
+    }
+    Node node = nodes[nextNode++];
+    node.value = value;
+    node.next = null;
+    node.prev = null;
+    return node;
+  }
+
   /**
    * Custom doubly circular linked list class for the columnsort algorithm.
    * The class contains methods to prepend, append, pop from the left, and pop
@@ -212,7 +258,7 @@ public class Prog3Testing {
      * @param value the value of the new node to be appended to the list
      */
     public final void append(int value) {
-      Node newNode = new Node(value);
+      Node newNode = newNode(value);
 
       if (head == null) { // List is empty
         head = newNode;
@@ -323,44 +369,65 @@ public class Prog3Testing {
 
   /**
    * Transposes and reshapes the given matrix represented as an ArrayList of
-   * DCLinkedList. The method iterates through the columns and rows of the matrix,
-   * adjusting the elements by popping and prepending values from the linked
-   * lists. The end result is as if the matrix was transposed and then reshaped so
-   * every two columns were concatenated.
+   * DCLinkedList. The elements are picked up in column-major order and laid down
+   * in row-major order, so the element at column-major index k moves to row
+   * k / cols of column k % cols. The end result is as if the matrix was
+   * transposed and then reshaped back into rows x cols.
+   * 
+   * The indices are walked backwards so every node can be popped from the right
+   * of its column and prepended to its new column without disturbing the order
+   * of the remaining nodes. Note that column c is stored at index cols - 1 - c.
    *
    * @param matrix the matrix to be transposed and reshaped, represented as an
    *               ArrayList of DCLinkedList
    */
   private static final void transposeAndReshape(ArrayList<DCLinkedList> matrix) {
-    for (int i = 0; i < matrix.size(); i++) {
-      for (int j = 0; j < cols; j++) {
-        int targetIndex = j % matrix.size();
-        matrix.get(targetIndex).prepend(matrix.get(i).popRight());
-      }
+    ArrayList<DCLinkedList> result = createEmptyMatrix();
+    for (int k = rows * cols - 1; k >= 0; k--) {
+      Node node = matrix.get(cols - 1 - k / rows).popRight();
+      result.get(cols - 1 - k % cols).prepend(node);
+    }
+    for (int i = 0; i < cols; i++) {
+      matrix.set(i, result.get(i));
     }
   }
 
   /**
    * Reshapes and transposes the given matrix represented as an ArrayList of
-   * DCLinkedList. The method iterates through the columns and rows of the matrix,
-   * adjusting the elements by appending and popping values from the linked lists.
+   * DCLinkedList. This is the inverse of transposeAndReshape: the elements are
+   * picked up in row-major order and laid down in column-major order, so the
+   * element at column-major index k comes from row k / cols of column k % cols.
    * 
-   * The end result is as if the matrix was reshaped so every two rows were
-   * concatenated and then the matrix was transposed.
+   * The end result is as if the matrix was reshaped into cols x rows and then
+   * transposed.
    *
    * @param matrix the matrix to be reshaped and transposed, represented as an
    *               ArrayList of DCLinkedList
    */
   private static final void reshapeAndTranspose(ArrayList<DCLinkedList> matrix) {
-    for (int i = cols - 1; i >= 0; i--) {
-      for (int j = 0; j < rows; j++) {
-        int offset = j % cols;
-        int targetIndex = cols - 1 - offset;
-        matrix.get(i).append(matrix.get(targetIndex).popLeft().value);
-      }
+    ArrayList<DCLinkedList> result = createEmptyMatrix();
+    for (int k = rows * cols - 1; k >= 0; k--) {
+      Node node = matrix.get(cols - 1 - k % cols).popRight();
+      result.get(cols - 1 - k / rows).prepend(node);
+    }
+    for (int i = 0; i < cols; i++) {
+      matrix.set(i, result.get(i));
     }
   }
 
+  /**
+   * Creates a matrix of cols empty columns.
+   *
+   * @return an ArrayList of empty DCLinkedList objects
+   */
+  private static final ArrayList<DCLinkedList> createEmptyMatrix() {
+    ArrayList<DCLinkedList> matrix = new ArrayList<>(cols);
+    for (int i = 0; i < cols; i++) {
+      matrix.add(new DCLinkedList());
+    }
+    return matrix;
+  }
+
   /**
    * Sorts the columns of a matrix represented as an ArrayList of DCLinkedList
    * objects. Each DCLinkedList represents a column in the matrix, and each column
@@ -415,12 +482,12 @@ public class Prog3Testing {
   }
 
   /**
-   * Shifts each column down by half the number of rows minus one. Elements
+   * Shifts each column down by half the number of rows. Elements
    * shifted past the last spot in their column are popped and prepended to the
    * next column.
    * 
    * This method performs the following operations:
-   * - Calculates the shift amount as half the number of rows minus one
+   * - Calculates the shift amount as half the number of rows
    * - For each column (except the first), it pops the calculated number of
    * elements from the end and prepends them to the next column.
    * - Removes the calculated number of padding values from the last
@@ -430,7 +497,7 @@ public class Prog3Testing {
    *               DCLinkedList.
    */
   private static final void shiftDownHalfR(ArrayList<DCLinkedList> matrix) {
-    int shift = (rows / 2) - 1;
+    int shift = rows / 2;
     int originalColCt = matrix.size();
 
     // Add a new col to front
@@ -450,17 +517,17 @@ public class Prog3Testing {
     int lastIndex = matrix.size() - 1;
     for (int i = 0; i < shift; i++) {
       matrix.get(0).append(Integer.MAX_VALUE);
-      matrix.get(lastIndex).prepend(new Node(Integer.MIN_VALUE));
+      matrix.get(lastIndex).prepend(newNode(Integer.MIN_VALUE));
     }
   }
 
   /**
-   * Shifts each column up by half the number of rows minus one. Elements shifted
+   * Shifts each column up by half the number of rows. Elements shifted
    * past the first spot in their column are popped and appended to the previous
    * column.
    * 
    * This method performs the following operations:
-   * - Calculates the shift amount as half the number of rows minus one
+   * - Calculates the shift amount as half the number of rows
    * - For each column (except the last), it pops the calculated number of
    * elements from the end and appends them to the previous column.
    * - Removes the calculated number of padding values from the first column
@@ -469,7 +536,7 @@ public class Prog3Testing {
    *               DCLinkedList.
    */
   private static final void shiftUpHalfR(ArrayList<DCLinkedList> matrix) {
-    int shift = (rows / 2) - 1;
+    int shift = rows / 2;
     int originalColCt = matrix.size();
 
     // For first n - 1 cols, pop `shift` values from the end and prepend to the
@@ -477,7 +544,7 @@ public class Prog3Testing {
     for (int i = originalColCt - 1; i > 0; i--) {
       DCLinkedList row = matrix.get(i);
       for (int j = 0; j < shift; j++) {
-        matrix.get(i - 1).prepend(new Node(row.popRight().value));
+        matrix.get(i - 1).prepend(newNode(row.popRight().value));
       }
     }
 
@@ -492,7 +559,7 @@ public class Prog3Testing {
   public static void quickSortWithSelectionSort(int[] array, int low, int high) {
     if (low < high) {
       if (high - low < INSERTION_SORT_THRESHOLD) {
-        selectionSort(array);
+        selectionSort(array, low, high);
       } else {
         int pi = partition(array, low, high);
         quickSort(array, low, pi - 1);
@@ -501,10 +568,14 @@ public class Prog3Testing {
     }
   }
 
-  private static void selectionSort(int[] array) {
-    for (int i = 0; i < array.length - 1; i++) {
+  /**
+   * Sorts the range [low, high] of the array, both ends inclusive, using
+   * selection sort.
+   */
+  private static void selectionSort(int[] array, int low, int high) {
+    for (int i = low; i < high; i++) {
       int minIndex = i;
-      for (int j = i + 1; j < array.length; j++) {
+      for (int j = i + 1; j <= high; j++) {
         if (array[j] < array[minIndex]) {
           minIndex = j;
         }
@@ -592,32 +663,8 @@ public class Prog3Testing {
   }
 
   /**
-   * Loads the lookup table from a binary file and returns it as a 2D array.
-   * The lookup table contains the r, s, and overflow values for each possible
-   * array size.
-   *
-   * @param fileName the name of the binary file containing the lookup table
-   * @return a 2D array containing the lookup table values
-   */
-  public static int[][] loadLookupTable(String fileName) {
-    int[][] lookupTable = new int[TOTAL_ENTRIES][3];
-
-    try (DataInputStream dis = new DataInputStream(new FileInputStream(fileName))) {
-      // Populate the array directly
-      for (int i = 0; i < TOTAL_ENTRIES; i++) {
-        lookupTable[i][0] = dis.readInt();
-        lookupTable[i][1] = dis.readInt();
-        lookupTable[i][2] = dis.readInt();
-      }
-    } catch (IOException e) {
-      e.printStackTrace();
-    }
-
-    return lookupTable;
-  }
-
-  /**
-   * Parses the data file and returns the data as an array of integers.
+   * Parses the data file and returns the data as an array of integers. The
+   * format (text or binary) is chosen from the file extension, see InputLoader.
    * If the file cannot be read or contains invalid data, an empty Optional is
    * returned.
    *
@@ -626,16 +673,17 @@ public class Prog3Testing {
    *         successfully, or an empty Optional if an error occurred
    */
   public static Optional<int[]> parseDataFile(String filename) {
-    try (Stream<String> lines = Files.lines(Paths.get(filename))) {
-      return Optional.of(lines
-          .mapToInt(Integer::parseInt)
-          .toArray());
+    try {
+      return Optional.of(InputLoader.load(Paths.get(filename)));
     } catch (IOException e) {
       System.out.println("Error reading file: " + e.getMessage());
       return Optional.empty();
     } catch (NumberFormatException e) {
       System.out.println("File contains invalid number format." + e.getMessage());
       return Optional.empty();
+    } catch (IllegalArgumentException e) {
+      System.out.println("Error reading file: " + e.getMessage());
+      return Optional.empty();
     }
   }
 }
\ No newline at end of file
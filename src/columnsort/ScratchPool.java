@@ -0,0 +1,195 @@
+import java.util.Arrays;
+
+/**
+ * ScratchPool keeps int arrays that are no longer needed so later sorts of a
+ * similar size can reuse them instead of allocating. This removes the
+ * allocation churn of sorting many similar-sized batches, where a fresh
+ * matrix and scratch array per call would otherwise dominate GC.
+ *
+ * Arrays are kept in buckets by size: bucket b holds arrays of exactly 2^b
+ * elements, and acquire rounds the requested length up to the next power of
+ * two. Any size between 2^(b-1) and 2^b is therefore served by the same
+ * arrays, at the cost of up to twice the memory of an exact fit. Each bucket
+ * keeps at most MAX_PER_BUCKET arrays, and a pool keeps at most its
+ * maxRetainedBytes in total. Arrays released into a full bucket or past that
+ * limit are left to the garbage collector, and trim drops kept arrays,
+ * largest first, down to any smaller limit.
+ *
+ * A pool is an arena owned by one thread at a time and is not synchronized.
+ * local() returns a pool per thread for callers that do not pass one
+ * explicitly. Those pools live as long as their thread, e.g. every worker of
+ * a ForkJoinPool that sorted a column, so they keep at most
+ * DEFAULT_MAX_RETAINED_BYTES each.
+ *
+ * Example:
+ * int[] buffer = pool.acquire(n);
+ * try {
+ * ...
+ * } finally {
+ * pool.release(buffer);
+ * }
+ */
+public final class ScratchPool {
+
+  /** Smallest bucket, so tiny requests share arrays of 2^MIN_BUCKET elements */
+  private static final int MIN_BUCKET = 6;
+
+  /** Largest bucket that fits in an array, 2^30 elements */
+  private static final int MAX_BUCKET = 30;
+
+  /** Number of arrays each bucket keeps */
+  public static final int MAX_PER_BUCKET = 4;
+
+  /** Bytes a pool keeps unless it was created with another limit, 64 MiB */
+  public static final long DEFAULT_MAX_RETAINED_BYTES = 64L << 20;
+
+  private static final ThreadLocal<ScratchPool> LOCAL = ThreadLocal.withInitial(ScratchPool::new);
+
+  /** Arrays kept in each bucket, the first counts[b] of buckets[b] are free */
+  private final int[][][] buckets = new int[MAX_BUCKET + 1][MAX_PER_BUCKET][];
+  private final int[] counts = new int[MAX_BUCKET + 1];
+
+  /** Bytes held by the arrays kept in the buckets */
+  private long retainedBytes;
+
+  /** Most bytes the kept arrays may hold */
+  private final long maxRetainedBytes;
+
+  /**
+   * Creates a pool that keeps at most DEFAULT_MAX_RETAINED_BYTES.
+   */
+  public ScratchPool() {
+    this(DEFAULT_MAX_RETAINED_BYTES);
+  }
+
+  /**
+   * Creates a pool that keeps at most maxRetainedBytes.
+   *
+   * @param maxRetainedBytes the most bytes the kept arrays may hold, 0 to keep
+   *                         none
+   * @throws IllegalArgumentException if maxRetainedBytes is negative
+   */
+  public ScratchPool(long maxRetainedBytes) {
+    if (maxRetainedBytes < 0) {
+      throw new IllegalArgumentException("Byte limit must be non-negative: " + maxRetainedBytes);
+    }
+    this.maxRetainedBytes = maxRetainedBytes;
+  }
+
+  /**
+   * Returns the pool of the calling thread.
+   */
+  public static ScratchPool local() {
+    return LOCAL.get();
+  }
+
+  /**
+   * Returns an array with at least minLength elements, reusing a released one
+   * if there is one of the right size. The contents of a reused array are
+   * whatever was left in it.
+   *
+   * @param minLength the number of elements needed
+   * @return the array, of length minLength rounded up to a power of two (or
+   *         exactly minLength past the largest bucket)
+   * @throws IllegalArgumentException if minLength is negative
+   */
+  public int[] acquire(int minLength) {
+    if (minLength < 0) {
+      throw new IllegalArgumentException("Length must be non-negative: " + minLength);
+    }
+    int bucket = bucketOf(minLength);
+    if (bucket > MAX_BUCKET) {
+      return new int[minLength];
+    }
+    if (counts[bucket] > 0) {
+      return take(bucket);
+    }
+    return new int[1 << bucket];
+  }
+
+  /**
+   * Offers an array to the pool for reuse. The pool does not track where
+   * arrays came from: any array of 2^b elements, with b from MIN_BUCKET to
+   * MAX_BUCKET, is kept while its bucket and the byte limit have room, and
+   * every other array is left to the garbage collector.
+   *
+   * @param array the array to return, which the caller must no longer use
+   */
+  public void release(int[] array) {
+    int length = array.length;
+    if (length < 1 << MIN_BUCKET || Integer.bitCount(length) != 1) {
+      return;
+    }
+    int bucket = Integer.numberOfTrailingZeros(length);
+    long bytes = bytesOf(bucket);
+    if (counts[bucket] < MAX_PER_BUCKET && retainedBytes + bytes <= maxRetainedBytes) {
+      buckets[bucket][counts[bucket]++] = array;
+      retainedBytes += bytes;
+    }
+  }
+
+  /**
+   * Drops kept arrays, largest first, until they hold at most maxBytes.
+   *
+   * @param maxBytes the most bytes to keep
+   */
+  public void trim(long maxBytes) {
+    for (int b = MAX_BUCKET; b >= MIN_BUCKET && retainedBytes > maxBytes; b--) {
+      while (counts[b] > 0 && retainedBytes > maxBytes) {
+        take(b);
+      }
+    }
+  }
+
+  /**
+   * Drops every array kept by the pool.
+   */
+  public void clear() {
+    for (int b = 0; b <= MAX_BUCKET; b++) {
+      Arrays.fill(buckets[b], null);
+      counts[b] = 0;
+    }
+    retainedBytes = 0;
+  }
+
+  /**
+   * Returns the number of bytes held by the arrays kept in the pool.
+   */
+  public long retainedBytes() {
+    return retainedBytes;
+  }
+
+  /**
+   * Returns the most bytes the arrays kept in the pool may hold.
+   */
+  public long maxRetainedBytes() {
+    return maxRetainedBytes;
+  }
+
+  /**
+   * Removes and returns the last kept array of a non-empty bucket.
+   */
+  private int[] take(int bucket) {
+    int[] array = buckets[bucket][--counts[bucket]];
+    buckets[bucket][counts[bucket]] = null;
+    retainedBytes -= bytesOf(bucket);
+    return array;
+  }
+
+  /**
+   * Returns the number of bytes of an array in the bucket.
+   */
+  private static long bytesOf(int bucket) {
+    return (long) Integer.BYTES << bucket;
+  }
+
+  /**
+   * Returns the bucket whose arrays have at least length elements.
+   */
+  private static int bucketOf(int length) {
+    if (length <= 1 << MIN_BUCKET) {
+      return MIN_BUCKET;
+    }
+    return 32 - Integer.numberOfLeadingZeros(length - 1);
+  }
+}
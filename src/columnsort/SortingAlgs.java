@@ -1,8 +1,12 @@
 import java.util.Arrays;
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.Function;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class SortingAlgs {
 
@@ -10,6 +14,109 @@ public class SortingAlgs {
 
   private static final int SAMPLE_SIZE = 64;
 
+  /** Number of windows of consecutive elements inspected by sort(int[]) */
+  private static final int PROFILE_WINDOWS = 32;
+
+  /** Number of consecutive elements in each window inspected by sort(int[]) */
+  private static final int PROFILE_WINDOW_LENGTH = 16;
+
+  /** Inputs at least this large go to Arrays.parallelSort when there is more than one core */
+  private static final int PARALLEL_SORT_THRESHOLD = 1 << 20;
+
+  /** Largest range of values that sort(int[]) counts instead of comparing */
+  private static final int MAX_COUNTING_RANGE = 1 << 24;
+
+  /** Default sequential cutoff of the parallel sorts */
+  public static final int PARALLEL_CUTOFF = 1 << 13;
+
+  /**
+   * Sorts the array with whichever algorithm suits it best. A profiling pass
+   * reads PROFILE_WINDOWS windows of PROFILE_WINDOW_LENGTH consecutive
+   * elements spread evenly over the array, i.e. at most 512 elements, and
+   * estimates from them how presorted the array is, the range of its values
+   * and how often values repeat. The array is then sorted by the first
+   * algorithm that applies:
+   * 1. insertion sort, below INSERTION_SORT_THRESHOLD elements
+   * 2. timSort, when nearly every sampled pair is in ascending or nearly every
+   * one in descending order, so the array is made of a few long runs
+   * 3. countingSort, when the sampled range is no larger than the array and a
+   * full pass confirms the values span at most 2n and MAX_COUNTING_RANGE values
+   * 4. Arrays.parallelSort, from PARALLEL_SORT_THRESHOLD elements on a machine
+   * with more than one core
+   * 5. radixSort, when at least 1 in 16 sampled values repeats another
+   * 6. dualPivotQuickSort2 otherwise
+   *
+   * @param array the array to sort
+   */
+  public static void sort(int[] array) {
+    int n = array.length;
+    if (n < INSERTION_SORT_THRESHOLD) {
+      insertionSort2(array, 0, n);
+      return;
+    }
+
+    // Profile evenly spaced windows, counting descents and ascents between neighbours
+    int windows = Math.min(PROFILE_WINDOWS, n / PROFILE_WINDOW_LENGTH);
+    int[] sample = new int[windows * PROFILE_WINDOW_LENGTH];
+    int pairs = 0;
+    int descents = 0;
+    int ascents = 0;
+    for (int w = 0; w < windows; w++) {
+      int start = (int) ((long) (n - PROFILE_WINDOW_LENGTH) * w / (windows - 1));
+      sample[w * PROFILE_WINDOW_LENGTH] = array[start];
+      for (int i = 1; i < PROFILE_WINDOW_LENGTH; i++) {
+        int previous = array[start + i - 1];
+        int current = array[start + i];
+        sample[w * PROFILE_WINDOW_LENGTH + i] = current;
+        pairs++;
+        if (current < previous) {
+          descents++;
+        } else if (current > previous) {
+          ascents++;
+        }
+      }
+    }
+    Arrays.sort(sample);
+    int duplicates = 0;
+    for (int i = 1; i < sample.length; i++) {
+      if (sample[i] == sample[i - 1]) {
+        duplicates++;
+      }
+    }
+
+    // At most 1 in 128 sampled pairs breaks a run
+    if (Math.min(descents, ascents) * 128 <= pairs) {
+      timSort(array);
+      return;
+    }
+
+    if ((long) sample[sample.length - 1] - sample[0] <= n) {
+      int min = array[0];
+      int max = array[0];
+      for (int value : array) {
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+      }
+      long range = (long) max - min + 1;
+      if (range <= 2L * n && range <= MAX_COUNTING_RANGE) {
+        countingSort(array, min, max);
+        return;
+      }
+    }
+
+    if (n >= PARALLEL_SORT_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+      Arrays.parallelSort(array);
+      return;
+    }
+
+    if (duplicates * 16 >= sample.length) {
+      radixSort(array);
+      return;
+    }
+
+    dualPivotQuickSort2(array, 0, n);
+  }
+
   /**
    * Shuffle the array using the Fisher-Yates algorithm.
    * 
@@ -27,7 +134,8 @@ public class SortingAlgs {
   /**
    * Run the function SAMPLE_SIZE times, shuffle the array in between each run and
    * without changing the original array. Return the average time taken to run the
-   * function.
+   * function. Every run sorts the same copy of the array, refilled from the
+   * original, so the runs themselves do not allocate.
    * 
    * @param array
    * @param sortingAlgorithm
@@ -36,8 +144,9 @@ public class SortingAlgs {
    */
   public static double getAverageTime(int[] array, Consumer<int[]> sortingAlgorithm) {
     double[] times = new double[SAMPLE_SIZE];
+    int[] arrayCopy = new int[array.length];
     for (int i = 0; i < SAMPLE_SIZE; i++) {
-      int[] arrayCopy = array.clone();
+      System.arraycopy(array, 0, arrayCopy, 0, array.length);
       shuffleArray(arrayCopy);
       double startTime = System.nanoTime();
       sortingAlgorithm.accept(arrayCopy);
@@ -47,85 +156,67 @@ public class SortingAlgs {
     return Arrays.stream(times).average().orElse(0) / 1_000_000.0;
   }
 
+  /**
+   * Returns every algorithm in the benchmark table by name, in table order.
+   * benchmarkAlgs and the JMH benchmarks in benchmarks/ both run this list.
+   *
+   * @return a new map from the name of each algorithm to a function sorting an
+   *         array in place with it
+   */
+  public static LinkedHashMap<String, Consumer<int[]>> algorithms() {
+    LinkedHashMap<String, Consumer<int[]>> algorithms = new LinkedHashMap<>();
+    algorithms.put("Insertion Sort", (array) -> insertionSort(array, 0));
+    algorithms.put("Dual-Pivot QuickSort", Arrays::sort);
+    algorithms.put("Parallel Sort", Arrays::parallelSort);
+    algorithms.put("Merge Sort", SortingAlgs::mergeSort);
+    algorithms.put("Merge Sort with Insertion Sort", SortingAlgs::mergeSortIntoInsertionSort);
+    algorithms.put("Radix Sort", SortingAlgs::radixSort);
+    algorithms.put("Bubble Sort", SortingAlgs::bubbleSort);
+    algorithms.put("Selection Sort", SortingAlgs::selectionSort);
+    algorithms.put("Quick Sort", (array) -> quickSort(array, 0, array.length - 1));
+    algorithms.put("Merge Sort with Selection Sort", SortingAlgs::mergeSortIntoSelectionSort);
+    algorithms.put("Merge Sort with Bubble Sort", SortingAlgs::mergeSortIntoBubbleSort);
+    algorithms.put("Quick Sort with Insertion Sort",
+        (array) -> quickSortWithInsertionSort(array, 0, array.length - 1));
+    algorithms.put("Quick Sort with Selection Sort",
+        (array) -> quickSortWithSelectionSort(array, 0, array.length - 1));
+    // dualPivotQuickSort2 takes an exclusive upper bound
+    algorithms.put("Dual-Pivot QuickSort (Custom)", (array) -> dualPivotQuickSort2(array, 0, array.length));
+    algorithms.put("Introspective Sort", SortingAlgs::introspectiveSort);
+    algorithms.put("Three-Way Quick Sort", (array) -> threeWayQuickSort(array, 0, array.length - 1));
+    algorithms.put("Median of Three Quick Sort", (array) -> medianOfThreeQuickSort(array, 0, array.length - 1));
+    algorithms.put("Heap Sort", SortingAlgs::heapSort);
+    algorithms.put("Adaptive Sort", SortingAlgs::sort);
+    algorithms.put("TimSort", SortingAlgs::timSort);
+    algorithms.put("Bucket Sort", SortingAlgs::bucketSort);
+    algorithms.put("Bitonic Sort", SortingAlgs::bitonicSort);
+    algorithms.put("Parallel Merge Sort", SortingAlgs::parallelMergeSort);
+    algorithms.put("Parallel Three-Way Quick Sort", SortingAlgs::parallelThreeWayQuickSort);
+    algorithms.put("Parallel Radix Sort", SortingAlgs::parallelRadixSort);
+    algorithms.put("Parallel Bucket Sort", SortingAlgs::parallelBucketSort);
+    algorithms.put("Parallel Bitonic Sort", SortingAlgs::parallelBitonicSort);
+    return algorithms;
+  }
+
+  /**
+   * Times every algorithm of algorithms() on the array with getAverageTime.
+   *
+   * These times are quick to get but include JIT warm-up and timer overhead;
+   * use the JMH benchmarks in benchmarks/ for numbers to make decisions on.
+   *
+   * @param arr the array to sort, which is left unchanged
+   * @return the average time of each algorithm in milliseconds, by name
+   */
   public static HashMap<String, Double> benchmarkAlgs(int[] arr) {
     HashMap<String, Double> sortingAlgorithms = new HashMap<>();
-
-    // Insertion sort
-    sortingAlgorithms.put("Insertion Sort", getAverageTime(arr, (array) -> insertionSort(array, 0)));
-
-    // Dual-Pivot QuickSort (Builtin Java)
-    sortingAlgorithms.put("Dual-Pivot QuickSort", getAverageTime(arr, Arrays::sort));
-
-    // Parallel Sort (Builtin Java)
-    sortingAlgorithms.put("Parallel Sort", getAverageTime(arr, Arrays::parallelSort));
-
-    // Merge Sort
-    sortingAlgorithms.put("Merge Sort", getAverageTime(arr, SortingAlgs::mergeSort));
-
-    // Merge Sort with Insertion Sort
-    sortingAlgorithms.put("Merge Sort with Insertion Sort",
-        getAverageTime(arr, SortingAlgs::mergeSortIntoInsertionSort));
-
-    // Radix Sort
-    if (!hasNegativeNumbers(arr)) {
-      sortingAlgorithms.put("Radix Sort", getAverageTime(arr, SortingAlgs::radixSort));
-    } else {
-      sortingAlgorithms.put("Radix Sort", 1.0);
+    for (Map.Entry<String, Consumer<int[]>> algorithm : algorithms().entrySet()) {
+      sortingAlgorithms.put(algorithm.getKey(), getAverageTime(arr, algorithm.getValue()));
     }
 
-    // Bubble Sort
-    sortingAlgorithms.put("Bubble Sort", getAverageTime(arr, SortingAlgs::bubbleSort));
-
-    // Selection Sort
-    sortingAlgorithms.put("Selection Sort", getAverageTime(arr, SortingAlgs::selectionSort));
-
-    // Quick Sort
-    sortingAlgorithms.put("Quick Sort", getAverageTime(arr, (array) -> quickSort(array, 0, array.length - 1)));
-    // Merge Sort with Selection Sort
-    sortingAlgorithms.put("Merge Sort with Selection Sort",
-        getAverageTime(arr, SortingAlgs::mergeSortIntoSelectionSort));
-
-    // Merge Sort with Bubble Sort
-    sortingAlgorithms.put("Merge Sort with Bubble Sort", getAverageTime(arr, SortingAlgs::mergeSortIntoBubbleSort));
-
-    // Quick Sort with Insertion Sort
-    sortingAlgorithms.put("Quick Sort with Insertion Sort",
-        getAverageTime(arr, (array) -> quickSortWithInsertionSort(array, 0, array.length - 1)));
-
-    // Quick Sort with Selection Sort
-    sortingAlgorithms.put("Quick Sort with Selection Sort",
-        getAverageTime(arr, (array) -> quickSortWithSelectionSort(array, 0, array.length - 1)));
-
-    // Dual-Pivot QuickSort (Custom)
-    sortingAlgorithms.put("Dual-Pivot QuickSort (Custom)",
-        getAverageTime(arr, (array) -> dualPivotQuickSort2(array, 0, array.length - 1)));
-
-    // Introspective Sort
-    sortingAlgorithms.put("Introspective Sort", getAverageTime(arr, SortingAlgs::introspectiveSort));
-
-    // Three-Way Quick Sort
-    sortingAlgorithms.put("Three-Way Quick Sort",
-        getAverageTime(arr, (array) -> threeWayQuickSort(array, 0, array.length - 1)));
-
-    // Median of Three Quick Sort
-    sortingAlgorithms.put("Median of Three Quick Sort",
-        getAverageTime(arr, (array) -> medianOfThreeQuickSort(array, 0, array.length - 1)));
-
-    // Heap Sort
-    sortingAlgorithms.put("Heap Sort", getAverageTime(arr, SortingAlgs::heapSort));
-
-    // Bucket Sort
-    // sortingAlgorithms.put("Bucket Sort", getAverageTime(arr,
-    // SortingAlgs::bucketSort));
-
     // Counting Sort with Insertion Sort
     // sortingAlgorithms.put("Counting Sort with Insertion Sort",
     // getAverageTime(arr, SortingAlgs::countingSortWithPartitionedMergeSort));
 
-    // Bitonic Sort
-    // sortingAlgorithms.put("Bitonic Sort", getAverageTime(arr,
-    // SortingAlgs::bitonicSort));
-
     // // Three-Way Quick Sort with Selection Sort
     // sortingAlgorithms.put("Three-Way Quick Sort with Selection Sort",
     // getAverageTime(arr, (array) -> threeWayQuicksortWithSelectionSort(array, 0,
@@ -143,15 +234,6 @@ public class SortingAlgs {
     return sortingAlgorithms;
   }
 
-  private static boolean hasNegativeNumbers(int[] arr) {
-    for (int i : arr) {
-      if (i < 0) {
-        return true;
-      }
-    }
-    return false;
-  }
-
   private static final void insertionSort(int[] arr, int partitionStart) {
     for (int i = partitionStart + 1; i < arr.length; i++) {
       int key = arr[i];
@@ -216,14 +298,83 @@ public class SortingAlgs {
   }
 
   public static void mergeSort(int[] array) {
-    if (array.length <= 1)
-      return;
-    int mid = array.length / 2;
-    int[] left = Arrays.copyOfRange(array, 0, mid);
-    int[] right = Arrays.copyOfRange(array, mid, array.length);
-    mergeSort(left);
-    mergeSort(right);
-    merge(array, left, right);
+    mergeSort(array, 0, array.length, new int[array.length]);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with merge sort, allocating its
+   * buffer. See mergeSort(int[], int, int, int[]).
+   *
+   * @param array the array to sort
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   */
+  public static void mergeSort(int[] array, int from, int to) {
+    mergeSort(array, from, to, new int[to - from]);
+  }
+
+  /**
+   * Sorts the array with merge sort, using the given buffer and allocating
+   * nothing. See mergeSort(int[], int, int, int[]).
+   *
+   * @param array  the array to sort
+   * @param buffer an array of at least array.length elements, overwritten
+   */
+  public static void mergeSort(int[] array, int[] buffer) {
+    mergeSort(array, 0, array.length, buffer);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a stable bottom-up merge sort
+   * that allocates nothing. Blocks of INSERTION_SORT_THRESHOLD elements are
+   * insertion sorted first, then runs of doubling width are merged pairwise,
+   * back and forth between the range and the buffer. Two runs that are
+   * already in order (the last element of the first is at most the first of
+   * the second) are copied instead of merged.
+   *
+   * @param array  the array to sort
+   * @param from   index of the first element to sort, inclusive
+   * @param to     index of the last element to sort, exclusive
+   * @param buffer an array of at least to - from elements, overwritten
+   */
+  public static void mergeSort(int[] array, int from, int to, int[] buffer) {
+    mergeSort(array, from, to, buffer, 0);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array as mergeSort(int[], int, int,
+   * int[]) does, using the buffer from index offset.
+   */
+  private static void mergeSort(int[] array, int from, int to, int[] buffer, int offset) {
+    int n = to - from;
+    for (int lo = from; lo < to; lo += INSERTION_SORT_THRESHOLD) {
+      insertionSort2(array, lo, Math.min(lo + INSERTION_SORT_THRESHOLD, to));
+    }
+
+    int[] src = array;
+    int srcFrom = from;
+    int[] dst = buffer;
+    int dstFrom = offset;
+    for (long width = INSERTION_SORT_THRESHOLD; width < n; width *= 2) {
+      for (int lo = 0; lo < n;) {
+        int mid = (int) Math.min(lo + width, n);
+        int hi = (int) Math.min(mid + width, n);
+        if (mid == hi || src[srcFrom + mid - 1] <= src[srcFrom + mid]) {
+          System.arraycopy(src, srcFrom + lo, dst, dstFrom + lo, hi - lo);
+        } else {
+          mergeRanges(src, srcFrom + lo, srcFrom + mid, srcFrom + mid, srcFrom + hi, dst, dstFrom + lo);
+        }
+        lo = hi;
+      }
+      int[] swap = src;
+      src = dst;
+      dst = swap;
+      int swapFrom = srcFrom;
+      srcFrom = dstFrom;
+      dstFrom = swapFrom;
+    }
+    if (src != array)
+      System.arraycopy(src, srcFrom, array, from, n);
   }
 
   public static void mergeSortIntoInsertionSort(int[] array) {
@@ -231,12 +382,7 @@ public class SortingAlgs {
       insertionSort(array, 0);
       return;
     }
-    int mid = array.length / 2;
-    int[] left = Arrays.copyOfRange(array, 0, mid);
-    int[] right = Arrays.copyOfRange(array, mid, array.length);
-    mergeSort(left);
-    mergeSort(right);
-    merge(array, left, right);
+    mergeSortHalves(array);
   }
 
   public static void mergeSortIntoSelectionSort(int[] array) {
@@ -244,12 +390,7 @@ public class SortingAlgs {
       selectionSort(array);
       return;
     }
-    int mid = array.length / 2;
-    int[] left = Arrays.copyOfRange(array, 0, mid);
-    int[] right = Arrays.copyOfRange(array, mid, array.length);
-    mergeSort(left);
-    mergeSort(right);
-    merge(array, left, right);
+    mergeSortHalves(array);
   }
 
   public static void mergeSortIntoBubbleSort(int[] array) {
@@ -257,48 +398,747 @@ public class SortingAlgs {
       bubbleSort(array);
       return;
     }
-    int mid = array.length / 2;
-    int[] left = Arrays.copyOfRange(array, 0, mid);
-    int[] right = Arrays.copyOfRange(array, mid, array.length);
-    mergeSort(left);
-    mergeSort(right);
-    merge(array, left, right);
+    mergeSortHalves(array);
   }
 
-  private static void merge(int[] array, int[] left, int[] right) {
-    int i = 0, j = 0, k = 0;
-    while (i < left.length && j < right.length) {
-      if (left[i] <= right[j]) {
-        array[k++] = left[i++];
-      } else {
-        array[k++] = right[j++];
+  /**
+   * Sorts both halves of the array with mergeSort and merges them, all through
+   * one buffer of array.length elements.
+   */
+  private static void mergeSortHalves(int[] array) {
+    int n = array.length;
+    int mid = n / 2;
+    int[] buffer = new int[n];
+    mergeSort(array, 0, mid, buffer);
+    mergeSort(array, mid, n, buffer);
+    if (array[mid - 1] <= array[mid])
+      return;
+    System.arraycopy(array, 0, buffer, 0, n);
+    mergeRanges(buffer, 0, mid, mid, n, array, 0);
+  }
+
+  /** Number of buckets per radix sort pass, one per value of a byte */
+  private static final int RADIX = 256;
+
+  public static void radixSort(int[] array) {
+    radixSort(array, 0, array.length);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a byte-wise LSD radix sort,
+   * allocating a scratch array for it. See radixSort(int[], int, int, int[]).
+   *
+   * @param array the array to sort
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   */
+  public static void radixSort(int[] array, int from, int to) {
+    radixSort(array, from, to, new int[to - from]);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a byte-wise (base 256) LSD
+   * radix sort. Every int is supported: flipping the sign bit of each key makes
+   * the byte order of negative values match their signed order.
+   *
+   * The histograms of all 4 bytes are counted in a single pass over the range
+   * before any element moves. A byte that is the same for every element, e.g.
+   * the top bytes of small values, is skipped instead of copying the range for
+   * nothing. The passes move the elements back and forth between the range and
+   * the scratch array, which is the only memory used besides the histograms.
+   *
+   * @param array   the array to sort
+   * @param from    index of the first element to sort, inclusive
+   * @param to      index of the last element to sort, exclusive
+   * @param scratch an array of at least to - from elements, overwritten
+   */
+  public static void radixSort(int[] array, int from, int to, int[] scratch) {
+    int n = to - from;
+    if (n < 2)
+      return;
+
+    int[] counts = new int[Integer.BYTES * RADIX];
+    for (int i = from; i < to; i++) {
+      int key = array[i] ^ Integer.MIN_VALUE;
+      for (int digit = 0; digit < Integer.BYTES; digit++) {
+        counts[digit * RADIX + (key >>> (8 * digit) & 0xFF)]++;
       }
     }
-    while (i < left.length)
-      array[k++] = left[i++];
-    while (j < right.length)
-      array[k++] = right[j++];
+
+    int[] src = array;
+    int srcOffset = from;
+    int[] dst = scratch;
+    int dstOffset = 0;
+    for (int digit = 0; digit < Integer.BYTES; digit++) {
+      int shift = 8 * digit;
+      int base = digit * RADIX;
+      if (!toOffsets(counts, base, (src[srcOffset] ^ Integer.MIN_VALUE) >>> shift & 0xFF, n))
+        continue;
+      for (int i = srcOffset; i < srcOffset + n; i++) {
+        int value = src[i];
+        dst[dstOffset + counts[base + ((value ^ Integer.MIN_VALUE) >>> shift & 0xFF)]++] = value;
+      }
+      int[] swap = src;
+      src = dst;
+      dst = swap;
+      int swapOffset = srcOffset;
+      srcOffset = dstOffset;
+      dstOffset = swapOffset;
+    }
+    if (src != array)
+      System.arraycopy(src, srcOffset, array, from, n);
   }
 
-  public static void radixSort(int[] array) {
-    int max = Arrays.stream(array).max().orElse(0);
-    for (int exp = 1; max / exp > 0; exp *= 10) {
-      countingSortByDigit(array, exp);
+  public static void radixSort(long[] array) {
+    radixSort(array, 0, array.length, new long[array.length]);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a byte-wise LSD radix sort
+   * over the 8 bytes of each long. Works as radixSort(int[], int, int, int[]).
+   *
+   * @param array   the array to sort
+   * @param from    index of the first element to sort, inclusive
+   * @param to      index of the last element to sort, exclusive
+   * @param scratch an array of at least to - from elements, overwritten
+   */
+  public static void radixSort(long[] array, int from, int to, long[] scratch) {
+    int n = to - from;
+    if (n < 2)
+      return;
+
+    int[] counts = new int[Long.BYTES * RADIX];
+    for (int i = from; i < to; i++) {
+      long key = array[i] ^ Long.MIN_VALUE;
+      for (int digit = 0; digit < Long.BYTES; digit++) {
+        counts[digit * RADIX + (int) (key >>> (8 * digit) & 0xFF)]++;
+      }
     }
+
+    long[] src = array;
+    int srcOffset = from;
+    long[] dst = scratch;
+    int dstOffset = 0;
+    for (int digit = 0; digit < Long.BYTES; digit++) {
+      int shift = 8 * digit;
+      int base = digit * RADIX;
+      if (!toOffsets(counts, base, (int) ((src[srcOffset] ^ Long.MIN_VALUE) >>> shift & 0xFF), n))
+        continue;
+      for (int i = srcOffset; i < srcOffset + n; i++) {
+        long value = src[i];
+        dst[dstOffset + counts[base + (int) ((value ^ Long.MIN_VALUE) >>> shift & 0xFF)]++] = value;
+      }
+      long[] swap = src;
+      src = dst;
+      dst = swap;
+      int swapOffset = srcOffset;
+      srcOffset = dstOffset;
+      dstOffset = swapOffset;
+    }
+    if (src != array)
+      System.arraycopy(src, srcOffset, array, from, n);
+  }
+
+  public static void radixSort(float[] array) {
+    radixSort(array, 0, array.length, new float[array.length]);
   }
 
-  private static void countingSortByDigit(int[] array, int exp) {
-    int[] output = new int[array.length];
-    int[] count = new int[10];
+  /**
+   * Sorts the range [from, to) of the array with a byte-wise LSD radix sort
+   * over the bits of each float, in the same order as Arrays.sort: -0.0f
+   * before 0.0f and every NaN last. The bits are made to sort as unsigned ints
+   * by flipping every bit of negative values and only the sign bit of the
+   * others. Works as radixSort(int[], int, int, int[]) otherwise.
+   *
+   * @param array   the array to sort
+   * @param from    index of the first element to sort, inclusive
+   * @param to      index of the last element to sort, exclusive
+   * @param scratch an array of at least to - from elements, overwritten
+   */
+  public static void radixSort(float[] array, int from, int to, float[] scratch) {
+    int n = to - from;
+    if (n < 2)
+      return;
+
+    int[] counts = new int[Integer.BYTES * RADIX];
+    for (int i = from; i < to; i++) {
+      int key = floatKey(array[i]);
+      for (int digit = 0; digit < Integer.BYTES; digit++) {
+        counts[digit * RADIX + (key >>> (8 * digit) & 0xFF)]++;
+      }
+    }
+
+    float[] src = array;
+    int srcOffset = from;
+    float[] dst = scratch;
+    int dstOffset = 0;
+    for (int digit = 0; digit < Integer.BYTES; digit++) {
+      int shift = 8 * digit;
+      int base = digit * RADIX;
+      if (!toOffsets(counts, base, floatKey(src[srcOffset]) >>> shift & 0xFF, n))
+        continue;
+      for (int i = srcOffset; i < srcOffset + n; i++) {
+        float value = src[i];
+        dst[dstOffset + counts[base + (floatKey(value) >>> shift & 0xFF)]++] = value;
+      }
+      float[] swap = src;
+      src = dst;
+      dst = swap;
+      int swapOffset = srcOffset;
+      srcOffset = dstOffset;
+      dstOffset = swapOffset;
+    }
+    if (src != array)
+      System.arraycopy(src, srcOffset, array, from, n);
+  }
 
+  /**
+   * Returns the bits of a float arranged so that comparing them as unsigned
+   * ints orders the floats like Float.compare. Every NaN maps to the same key.
+   */
+  private static int floatKey(float value) {
+    int bits = Float.floatToIntBits(value);
+    return bits ^ (bits >> 31 | Integer.MIN_VALUE);
+  }
+
+  /**
+   * Turns the histogram of one digit, RADIX counts starting at base, into the
+   * index of the first element of each bucket, unless every one of the n
+   * elements has the same digit.
+   *
+   * @param counts the histograms of every digit
+   * @param base   index of the first count of the digit
+   * @param sample the digit of any one element
+   * @param n      the number of elements
+   * @return false if the pass over this digit can be skipped
+   */
+  private static boolean toOffsets(int[] counts, int base, int sample, int n) {
+    if (counts[base + sample] == n)
+      return false;
+    int sum = 0;
+    for (int i = base; i < base + RADIX; i++) {
+      int count = counts[i];
+      counts[i] = sum;
+      sum += count;
+    }
+    return true;
+  }
+
+  /**
+   * Sorts the array by counting the occurrences of each value. Every value must
+   * be in [min, max].
+   *
+   * @param array the array to sort
+   * @param min   the smallest value in the array
+   * @param max   the largest value in the array
+   */
+  public static void countingSort(int[] array, int min, int max) {
+    int[] count = new int[max - min + 1];
     for (int value : array)
-      count[(value / exp) % 10]++;
-    for (int i = 1; i < 10; i++)
-      count[i] += count[i - 1];
-    for (int i = array.length - 1; i >= 0; i--) {
-      output[--count[(array[i] / exp) % 10]] = array[i];
+      count[value - min]++;
+    int index = 0;
+    for (int i = 0; i < count.length; i++) {
+      Arrays.fill(array, index, index + count[i], min + i);
+      index += count[i];
+    }
+  }
+
+  private static void reverse(int[] array, int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--)
+      swap(array, i, j);
+  }
+
+  /** Runs shorter than the minimum run length of timSort are extended to it */
+  private static final int MIN_MERGE = 32;
+
+  /** Initial number of wins in a row after which a timSort merge gallops */
+  private static final int MIN_GALLOP = 7;
+
+  /** Largest number of pending runs, enough for any array length */
+  private static final int MAX_PENDING_RUNS = 49;
+
+  public static void timSort(int[] array) {
+    timSort(array, 0, array.length);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a natural merge sort in the
+   * style of TimSort, which is fastest on arrays that are already made of long
+   * runs, such as time series that are sorted but for a few late values:
+   * 1. The range is scanned left to right for the next run, ascending or
+   * strictly descending; descending runs are reversed in place.
+   * 2. A run shorter than the minimum run length, between MIN_MERGE / 2 and
+   * MIN_MERGE, is extended to it with binary insertion sort.
+   * 3. The run is pushed on a stack of pending runs, and the top runs are
+   * merged while their lengths stop shrinking fast enough from the bottom to
+   * the top of the stack, so merges stay balanced.
+   * 4. Each merge first gallops to skip the prefix of the first run and the
+   * suffix of the second that are already in place, copies the shorter run
+   * into a buffer of at most half the range, and merges one element at a time
+   * until one run wins MIN_GALLOP times in a row. It then gallops, finding
+   * with an exponential and a binary search how many elements that run wins
+   * and copying them at once, until galloping stops paying off.
+   *
+   * A sorted or reverse sorted range is a single run and takes one pass with
+   * no buffer.
+   *
+   * @param array the array to sort
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   */
+  public static void timSort(int[] array, int from, int to) {
+    int remaining = to - from;
+    if (remaining < 2)
+      return;
+    if (remaining < MIN_MERGE) {
+      int run = countRunAndMakeAscending(array, from, to);
+      binaryInsertionSort(array, from, to, from + run);
+      return;
+    }
+
+    RunMerger merger = new RunMerger(array, remaining);
+    int minRun = minRunLength(remaining);
+    int lo = from;
+    while (remaining > 0) {
+      int run = countRunAndMakeAscending(array, lo, to);
+      if (run < minRun) {
+        int forced = Math.min(remaining, minRun);
+        binaryInsertionSort(array, lo, lo + forced, lo + run);
+        run = forced;
+      }
+      merger.pushRun(lo, run);
+      merger.mergeCollapse();
+      lo += run;
+      remaining -= run;
+    }
+    merger.mergeForceCollapse();
+  }
+
+  /**
+   * Returns the minimum run length of timSort for n elements: n itself below
+   * MIN_MERGE, and otherwise a length between MIN_MERGE / 2 and MIN_MERGE such
+   * that n / length is a power of two or slightly less, so the final merges
+   * are balanced.
+   */
+  private static int minRunLength(int n) {
+    int odd = 0;
+    while (n >= MIN_MERGE) {
+      odd |= n & 1;
+      n >>= 1;
+    }
+    return n + odd;
+  }
+
+  /**
+   * Returns the length of the run starting at index from of the range [from,
+   * to), reversing it first if it is strictly descending. Equal elements end a
+   * descending run, so reversing never reorders them.
+   */
+  private static int countRunAndMakeAscending(int[] array, int from, int to) {
+    int end = from + 1;
+    if (end == to)
+      return 1;
+    if (array[end++] < array[from]) {
+      while (end < to && array[end] < array[end - 1])
+        end++;
+      reverse(array, from, end);
+    } else {
+      while (end < to && array[end] >= array[end - 1])
+        end++;
+    }
+    return end - from;
+  }
+
+  /**
+   * Sorts the range [from, to) of the array, of which [from, start) is already
+   * sorted, by inserting each following element after a binary search for
+   * its place among the sorted ones.
+   */
+  private static void binaryInsertionSort(int[] array, int from, int to, int start) {
+    for (; start < to; start++) {
+      int pivot = array[start];
+      int left = from;
+      int right = start;
+      while (left < right) {
+        int mid = (left + right) >>> 1;
+        if (pivot < array[mid]) {
+          right = mid;
+        } else {
+          left = mid + 1;
+        }
+      }
+      System.arraycopy(array, left, array, left + 1, start - left);
+      array[left] = pivot;
+    }
+  }
+
+  /**
+   * Returns the index k of the sorted range [base, base + length) of the array
+   * before which key goes ahead of any equal element, i.e. the number of
+   * elements less than key. The search starts at base + hint and gallops away
+   * from it, so it is fast when key belongs near the hint.
+   */
+  private static int gallopLeft(int key, int[] array, int base, int length, int hint) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (key > array[base + hint]) {
+      // Gallop right until array[base + hint + lastOffset] < key <= array[base + hint + offset]
+      int maxOffset = length - hint;
+      while (offset < maxOffset && key > array[base + hint + offset]) {
+        lastOffset = offset;
+        offset = (offset << 1) + 1;
+        if (offset <= 0)
+          offset = maxOffset;
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    } else {
+      // Gallop left until array[base + hint - offset] < key <= array[base + hint - lastOffset]
+      int maxOffset = hint + 1;
+      while (offset < maxOffset && key <= array[base + hint - offset]) {
+        lastOffset = offset;
+        offset = (offset << 1) + 1;
+        if (offset <= 0)
+          offset = maxOffset;
+      }
+      offset = Math.min(offset, maxOffset);
+      int temp = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - temp;
+    }
+
+    // Binary search (lastOffset, offset]
+    lastOffset++;
+    while (lastOffset < offset) {
+      int mid = lastOffset + ((offset - lastOffset) >>> 1);
+      if (key > array[base + mid]) {
+        lastOffset = mid + 1;
+      } else {
+        offset = mid;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * Returns the index k of the sorted range [base, base + length) of the array
+   * before which key goes after any equal element, i.e. the number of
+   * elements less than or equal to key. See gallopLeft.
+   */
+  private static int gallopRight(int key, int[] array, int base, int length, int hint) {
+    int lastOffset = 0;
+    int offset = 1;
+    if (key < array[base + hint]) {
+      // Gallop left until array[base + hint - offset] <= key < array[base + hint - lastOffset]
+      int maxOffset = hint + 1;
+      while (offset < maxOffset && key < array[base + hint - offset]) {
+        lastOffset = offset;
+        offset = (offset << 1) + 1;
+        if (offset <= 0)
+          offset = maxOffset;
+      }
+      offset = Math.min(offset, maxOffset);
+      int temp = lastOffset;
+      lastOffset = hint - offset;
+      offset = hint - temp;
+    } else {
+      // Gallop right until array[base + hint + lastOffset] <= key < array[base + hint + offset]
+      int maxOffset = length - hint;
+      while (offset < maxOffset && key >= array[base + hint + offset]) {
+        lastOffset = offset;
+        offset = (offset << 1) + 1;
+        if (offset <= 0)
+          offset = maxOffset;
+      }
+      offset = Math.min(offset, maxOffset);
+      lastOffset += hint;
+      offset += hint;
+    }
+
+    // Binary search (lastOffset, offset]
+    lastOffset++;
+    while (lastOffset < offset) {
+      int mid = lastOffset + ((offset - lastOffset) >>> 1);
+      if (key < array[base + mid]) {
+        offset = mid;
+      } else {
+        lastOffset = mid + 1;
+      }
+    }
+    return offset;
+  }
+
+  /**
+   * The stack of pending runs of one timSort call and the merges between them.
+   * The invariants kept on the run lengths, from the top of the stack down,
+   * are those of TimSort as corrected in 2015: every run is longer than the
+   * two above it together, and every run is longer than the one above it.
+   */
+  private static final class RunMerger {
+    private final int[] array;
+    private final int length;
+    private final int[] runBase = new int[MAX_PENDING_RUNS];
+    private final int[] runLength = new int[MAX_PENDING_RUNS];
+    private int pending;
+    private int[] buffer;
+    private int minGallop = MIN_GALLOP;
+
+    RunMerger(int[] array, int length) {
+      this.array = array;
+      this.length = length;
+    }
+
+    void pushRun(int base, int length) {
+      runBase[pending] = base;
+      runLength[pending] = length;
+      pending++;
+    }
+
+    /** Merges runs at the top of the stack until the invariants hold again. */
+    void mergeCollapse() {
+      while (pending > 1) {
+        int n = pending - 2;
+        if (n > 0 && runLength[n - 1] <= runLength[n] + runLength[n + 1]
+            || n > 1 && runLength[n - 2] <= runLength[n] + runLength[n - 1]) {
+          if (runLength[n - 1] < runLength[n + 1])
+            n--;
+        } else if (runLength[n] > runLength[n + 1]) {
+          break;
+        }
+        mergeAt(n);
+      }
+    }
+
+    /** Merges all the pending runs into one. */
+    void mergeForceCollapse() {
+      while (pending > 1) {
+        int n = pending - 2;
+        if (n > 0 && runLength[n - 1] < runLength[n + 1])
+          n--;
+        mergeAt(n);
+      }
+    }
+
+    /** Merges the pending runs i and i + 1. */
+    private void mergeAt(int i) {
+      int base1 = runBase[i];
+      int length1 = runLength[i];
+      int base2 = runBase[i + 1];
+      int length2 = runLength[i + 1];
+      runLength[i] = length1 + length2;
+      if (i == pending - 3) {
+        runBase[i + 1] = runBase[i + 2];
+        runLength[i + 1] = runLength[i + 2];
+      }
+      pending--;
+
+      // Elements of run 1 up to the first of run 2, and of run 2 from the last
+      // of run 1, are already in place
+      int k = gallopRight(array[base2], array, base1, length1, 0);
+      base1 += k;
+      length1 -= k;
+      if (length1 == 0)
+        return;
+      length2 = gallopLeft(array[base1 + length1 - 1], array, base2, length2, length2 - 1);
+      if (length2 == 0)
+        return;
+
+      if (length1 <= length2) {
+        mergeLow(base1, length1, base2, length2);
+      } else {
+        mergeHigh(base1, length1, base2, length2);
+      }
+    }
+
+    /**
+     * Merges the adjacent runs [base1, base1 + length1) and [base2, base2 +
+     * length2) from the left, through a copy of the first, shorter run. The
+     * first element of run 2 is less than the first of run 1, and the last
+     * element of run 1 is greater than every element of run 2.
+     */
+    private void mergeLow(int base1, int length1, int base2, int length2) {
+      int[] a = array;
+      int[] temp = buffer(length1);
+      System.arraycopy(a, base1, temp, 0, length1);
+      int cursor1 = 0;
+      int cursor2 = base2;
+      int dest = base1;
+
+      a[dest++] = a[cursor2++];
+      if (--length2 == 0) {
+        System.arraycopy(temp, cursor1, a, dest, length1);
+        return;
+      }
+      if (length1 == 1) {
+        System.arraycopy(a, cursor2, a, dest, length2);
+        a[dest + length2] = temp[cursor1];
+        return;
+      }
+
+      int minGallop = this.minGallop;
+      outer:
+      while (true) {
+        // One element at a time until a run wins minGallop times in a row
+        int count1 = 0;
+        int count2 = 0;
+        do {
+          if (a[cursor2] < temp[cursor1]) {
+            a[dest++] = a[cursor2++];
+            count2++;
+            count1 = 0;
+            if (--length2 == 0)
+              break outer;
+          } else {
+            a[dest++] = temp[cursor1++];
+            count1++;
+            count2 = 0;
+            if (--length1 == 1)
+              break outer;
+          }
+        } while ((count1 | count2) < minGallop);
+
+        // Gallop while either run wins at least MIN_GALLOP elements at once
+        do {
+          count1 = gallopRight(a[cursor2], temp, cursor1, length1, 0);
+          if (count1 != 0) {
+            System.arraycopy(temp, cursor1, a, dest, count1);
+            dest += count1;
+            cursor1 += count1;
+            length1 -= count1;
+            if (length1 <= 1)
+              break outer;
+          }
+          a[dest++] = a[cursor2++];
+          if (--length2 == 0)
+            break outer;
+
+          count2 = gallopLeft(temp[cursor1], a, cursor2, length2, 0);
+          if (count2 != 0) {
+            System.arraycopy(a, cursor2, a, dest, count2);
+            dest += count2;
+            cursor2 += count2;
+            length2 -= count2;
+            if (length2 == 0)
+              break outer;
+          }
+          a[dest++] = temp[cursor1++];
+          if (--length1 == 1)
+            break outer;
+          minGallop--;
+        } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+        minGallop = Math.max(minGallop, 0) + 2;
+      }
+      this.minGallop = Math.max(minGallop, 1);
+
+      if (length1 == 1) {
+        System.arraycopy(a, cursor2, a, dest, length2);
+        a[dest + length2] = temp[cursor1];
+      } else {
+        System.arraycopy(temp, cursor1, a, dest, length1);
+      }
+    }
+
+    /**
+     * Merges the adjacent runs [base1, base1 + length1) and [base2, base2 +
+     * length2) from the right, through a copy of the second, shorter run. See
+     * mergeLow.
+     */
+    private void mergeHigh(int base1, int length1, int base2, int length2) {
+      int[] a = array;
+      int[] temp = buffer(length2);
+      System.arraycopy(a, base2, temp, 0, length2);
+      int cursor1 = base1 + length1 - 1;
+      int cursor2 = length2 - 1;
+      int dest = base2 + length2 - 1;
+
+      a[dest--] = a[cursor1--];
+      if (--length1 == 0) {
+        System.arraycopy(temp, 0, a, dest - (length2 - 1), length2);
+        return;
+      }
+      if (length2 == 1) {
+        dest -= length1;
+        cursor1 -= length1;
+        System.arraycopy(a, cursor1 + 1, a, dest + 1, length1);
+        a[dest] = temp[cursor2];
+        return;
+      }
+
+      int minGallop = this.minGallop;
+      outer:
+      while (true) {
+        // One element at a time until a run wins minGallop times in a row
+        int count1 = 0;
+        int count2 = 0;
+        do {
+          if (temp[cursor2] < a[cursor1]) {
+            a[dest--] = a[cursor1--];
+            count1++;
+            count2 = 0;
+            if (--length1 == 0)
+              break outer;
+          } else {
+            a[dest--] = temp[cursor2--];
+            count2++;
+            count1 = 0;
+            if (--length2 == 1)
+              break outer;
+          }
+        } while ((count1 | count2) < minGallop);
+
+        // Gallop while either run wins at least MIN_GALLOP elements at once
+        do {
+          count1 = length1 - gallopRight(temp[cursor2], a, base1, length1, length1 - 1);
+          if (count1 != 0) {
+            dest -= count1;
+            cursor1 -= count1;
+            length1 -= count1;
+            System.arraycopy(a, cursor1 + 1, a, dest + 1, count1);
+            if (length1 == 0)
+              break outer;
+          }
+          a[dest--] = temp[cursor2--];
+          if (--length2 == 1)
+            break outer;
+
+          count2 = length2 - gallopLeft(a[cursor1], temp, 0, length2, length2 - 1);
+          if (count2 != 0) {
+            dest -= count2;
+            cursor2 -= count2;
+            length2 -= count2;
+            System.arraycopy(temp, cursor2 + 1, a, dest + 1, count2);
+            if (length2 <= 1)
+              break outer;
+          }
+          a[dest--] = a[cursor1--];
+          if (--length1 == 0)
+            break outer;
+          minGallop--;
+        } while (count1 >= MIN_GALLOP || count2 >= MIN_GALLOP);
+        minGallop = Math.max(minGallop, 0) + 2;
+      }
+      this.minGallop = Math.max(minGallop, 1);
+
+      if (length2 == 1) {
+        dest -= length1;
+        cursor1 -= length1;
+        System.arraycopy(a, cursor1 + 1, a, dest + 1, length1);
+        a[dest] = temp[cursor2];
+      } else {
+        System.arraycopy(temp, 0, a, dest - (length2 - 1), length2);
+      }
+    }
+
+    /**
+     * Returns the merge buffer, allocating it on the first merge with room for
+     * the shorter of any two runs, i.e. half the range.
+     */
+    private int[] buffer(int minLength) {
+      if (buffer == null)
+        buffer = new int[Math.max(minLength, length >>> 1)];
+      return buffer;
     }
-    System.arraycopy(output, 0, array, 0, array.length);
   }
 
   private static void bubbleSort(int[] array) {
@@ -373,14 +1213,62 @@ public class SortingAlgs {
       swap(a, low, --left);
       swap(a, high - 1, ++right);
 
-      // Sort the partitions
-      dualPivotQuickSort2(a, low, left);
-      dualPivotQuickSort2(a, left + 1, right);
-      dualPivotQuickSort2(a, right + 1, high);
-      return;
+      // The middle partition holds pivot1 <= x <= pivot2. With equal pivots it
+      // is sorted already; otherwise, when it holds most of the range, e.g.
+      // because the pivots are frequent values, move the elements equal to a
+      // pivot to its ends so only those strictly between are left to sort.
+      int middleLow = left + 1;
+      int middleHigh = right;
+      if (pivot1 == pivot2) {
+        middleHigh = middleLow;
+      } else if (middleHigh - middleLow > size / 2) {
+        k = middleLow;
+        int last = middleHigh - 1;
+        while (k <= last) {
+          if (a[k] == pivot1) {
+            swap(a, k++, middleLow++);
+          } else if (a[k] == pivot2) {
+            swap(a, k, last--);
+          } else {
+            k++;
+          }
+        }
+        middleHigh = last + 1;
+      }
+
+      // Sort the two smaller partitions recursively and loop on the largest,
+      // so the recursion is at most log2(size) deep
+      int lowSize = left - low;
+      int middleSize = middleHigh - middleLow;
+      int highSize = high - right - 1;
+      if (lowSize >= middleSize && lowSize >= highSize) {
+        dualPivotQuickSort2(a, middleLow, middleHigh);
+        dualPivotQuickSort2(a, right + 1, high);
+        high = left;
+      } else if (middleSize >= highSize) {
+        dualPivotQuickSort2(a, low, left);
+        dualPivotQuickSort2(a, right + 1, high);
+        low = middleLow;
+        high = middleHigh;
+      } else {
+        dualPivotQuickSort2(a, low, left);
+        dualPivotQuickSort2(a, middleLow, middleHigh);
+        low = right + 1;
+      }
     }
   }
 
+  /**
+   * Sorts the range [from, to) of the array with insertion sort.
+   *
+   * @param array the array to sort
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   */
+  public static void insertionSort(int[] array, int from, int to) {
+    insertionSort2(array, from, to);
+  }
+
   // Simple insertion sort for small partitions
   private static void insertionSort2(int[] a, int low, int high) {
     for (int i = low + 1; i < high; i++) {
@@ -424,45 +1312,57 @@ public class SortingAlgs {
   }
 
   private static void heapSort(int[] array) {
-    int n = array.length;
+    heapSort(array, 0, array.length);
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with heap sort. The heap is rooted
+   * at index from, so heap index i lives at array index from + i.
+   *
+   * @param array the array to sort
+   * @param from  index of the first element to sort, inclusive
+   * @param to    index of the last element to sort, exclusive
+   */
+  public static void heapSort(int[] array, int from, int to) {
+    int n = to - from;
 
     // Build heap (rearrange array)
     for (int i = n / 2 - 1; i >= 0; i--)
-      heapify(array, n, i);
+      heapify(array, from, n, i);
 
     // One by one extract an element from heap
     for (int i = n - 1; i > 0; i--) {
       // Move current root to end
-      int temp = array[0];
-      array[0] = array[i];
-      array[i] = temp;
+      int temp = array[from];
+      array[from] = array[from + i];
+      array[from + i] = temp;
 
       // call max heapify on the reduced heap
-      heapify(array, i, 0);
+      heapify(array, from, i, 0);
     }
   }
 
-  private static void heapify(int[] array, int n, int i) {
+  private static void heapify(int[] array, int offset, int n, int i) {
     int largest = i; // Initialize largest as root
     int l = 2 * i + 1; // left = 2*i + 1
     int r = 2 * i + 2; // right = 2*i + 2
 
     // If left child is larger than root
-    if (l < n && array[l] > array[largest])
+    if (l < n && array[offset + l] > array[offset + largest])
       largest = l;
 
     // If right child is larger than largest so far
-    if (r < n && array[r] > array[largest])
+    if (r < n && array[offset + r] > array[offset + largest])
       largest = r;
 
     // If largest is not root
     if (largest != i) {
-      int swap = array[i];
-      array[i] = array[largest];
-      array[largest] = swap;
+      int swap = array[offset + i];
+      array[offset + i] = array[offset + largest];
+      array[offset + largest] = swap;
 
       // Recursively heapify the affected sub-tree
-      heapify(array, n, largest);
+      heapify(array, offset, n, largest);
     }
   }
 
@@ -567,51 +1467,87 @@ public class SortingAlgs {
     array[j] = temp;
   }
 
+  /** Expected number of elements per bucket of bucketSort */
+  private static final int BUCKET_SIZE = 16;
+
+  /**
+   * Sorts the array with a bucket sort, which is fastest on values spread
+   * evenly over their range. The range from the smallest to the largest value
+   * is cut into equal power-of-two slices, about one per BUCKET_SIZE
+   * elements, so the bucket of an element is its offset from the smallest
+   * value shifted right; the offset is computed in long, so any two ints have
+   * one. Then:
+   * 1. a counting pass sizes the buckets and lays them out one after another
+   * in a single buffer of n ints
+   * 2. a second pass moves every element into its bucket
+   * 3. every bucket is sorted in the buffer by the bottom-up merge sort of
+   * mergeSort, using the same range of the array as its buffer, and copied
+   * back. Buckets of up to INSERTION_SORT_THRESHOLD elements, i.e. nearly all
+   * of them on even values, take one insertion sort; a bucket that uneven
+   * values overfill still takes O(k log k).
+   *
+   * @param array the array to sort
+   */
   public static void bucketSort(int[] array) {
-    int n = array.length;
-    if (n <= 1)
+    if (array.length <= 1)
       return;
+    int[] buffer = new int[array.length];
+    int[] starts = scatterIntoBuckets(array, buffer);
+    if (starts != null)
+      sortBuckets(array, buffer, starts, 0, starts.length - 1);
+  }
 
-    int max = Arrays.stream(array).max().orElse(0);
-    int min = Arrays.stream(array).min().orElse(0);
-
-    // Define the number of buckets and their range
-    int bucketCount = (int) Math.sqrt(n); // Optimal number of buckets is often √n
-    int bucketRange = (max - min) / bucketCount + 1;
-
-    // Create buckets as array of ArrayLists
-    ArrayList<Integer>[] buckets = new ArrayList[bucketCount];
-    for (int i = 0; i < bucketCount; i++) {
-      buckets[i] = new ArrayList<>();
-    }
-
-    // Distribute elements into buckets
+  /**
+   * Moves the elements of the array into contiguous buckets of the buffer as
+   * bucketSort describes, keeping their order within a bucket.
+   *
+   * @return the index of the first element of every bucket followed by
+   *         array.length, or null if every element is equal
+   */
+  private static int[] scatterIntoBuckets(int[] array, int[] buffer) {
+    int n = array.length;
+    int min = array[0];
+    int max = array[0];
     for (int value : array) {
-      int bucketIndex = (value - min) / bucketRange;
-      buckets[bucketIndex].add(value);
+      min = Math.min(min, value);
+      max = Math.max(max, value);
     }
+    if (min == max)
+      return null;
 
-    // Sort each bucket using insertion sort or another suitable algorithm
-    int index = 0;
-    for (ArrayList<Integer> bucket : buckets) {
-      insertionSort(bucket);
-      for (int value : bucket) {
-        array[index++] = value;
-      }
+    long range = (long) max - min;
+    int bucketBits = 31 - Integer.numberOfLeadingZeros(Math.max(n / BUCKET_SIZE, 1));
+    int shift = Math.max(64 - Long.numberOfLeadingZeros(range) - bucketBits, 0);
+    int buckets = (int) (range >>> shift) + 1;
+
+    // Count, then turn the counts into the end of every bucket and fill the
+    // buckets from the back, which leaves the start of every bucket
+    int[] starts = new int[buckets + 1];
+    for (int value : array)
+      starts[(int) ((long) value - min >>> shift)]++;
+    for (int bucket = 1; bucket < buckets; bucket++)
+      starts[bucket] += starts[bucket - 1];
+    for (int i = n - 1; i >= 0; i--) {
+      int value = array[i];
+      buffer[--starts[(int) ((long) value - min >>> shift)]] = value;
     }
+    starts[buckets] = n;
+    return starts;
   }
 
-  // Insertion sort for ArrayList
-  private static void insertionSort(ArrayList<Integer> bucket) {
-    for (int i = 1; i < bucket.size(); i++) {
-      int key = bucket.get(i);
-      int j = i - 1;
-      while (j >= 0 && bucket.get(j) > key) {
-        bucket.set(j + 1, bucket.get(j));
-        j--;
-      }
-      bucket.set(j + 1, key);
+  /**
+   * Sorts the buckets [fromBucket, toBucket) of the buffer and copies them
+   * back to the same range of the array.
+   */
+  private static void sortBuckets(int[] array, int[] buffer, int[] starts, int fromBucket, int toBucket) {
+    for (int bucket = fromBucket; bucket < toBucket; bucket++) {
+      int from = starts[bucket];
+      int to = starts[bucket + 1];
+      if (to - from > 1)
+        mergeSort(buffer, from, to, array, from);
     }
+    int from = starts[fromBucket];
+    System.arraycopy(buffer, from, array, from, starts[toBucket] - from);
   }
 
   private static final int MAX_COUNTING_SORT_RANGE = 512;
@@ -692,25 +1628,158 @@ public class SortingAlgs {
   // }
   // }
 
-  private static void bitonicSort(int[] array) {
+  /** Largest number of elements bitonicSort accepts, as it pads to a power of two */
+  public static final int MAX_BITONIC_LENGTH = 1 << 30;
+
+  /**
+   * Number of elements bitonicSort runs the network stages on one block at a
+   * time, 16 KB of ints, so the stages within a block stay in the L1 cache
+   */
+  private static final int BITONIC_BLOCK = 1 << 12;
+
+  /**
+   * A step of the bitonic sorting network: compare-exchanges the count pairs
+   * (i + t, i + t + j) of the array, for t from 0 to count - 1 and count at
+   * most j, leaving the smaller element of each pair first if ascending and
+   * last otherwise. vector/VectorBitonicKernel.java implements it with the
+   * Vector API.
+   */
+  interface BitonicKernel {
+    void compareExchange(int[] array, int i, int j, int count, boolean ascending);
+  }
+
+  /**
+   * The kernel of the bitonic sorts: the SIMD one in VectorBitonicKernel if it
+   * can be used, looked up by name as ColumnSorter.vector() does, and
+   * compareExchange otherwise
+   */
+  private static final BitonicKernel BITONIC_KERNEL = bitonicKernel();
+
+  private static BitonicKernel bitonicKernel() {
+    try {
+      Class<?> type = Class.forName("VectorBitonicKernel");
+      if ((Boolean) type.getMethod("isSupported").invoke(null)) {
+        return (BitonicKernel) type.getField("INSTANCE").get(null);
+      }
+    } catch (ReflectiveOperationException | LinkageError e) {
+      // Not compiled, or the incubator module is not available
+    }
+    return SortingAlgs::compareExchange;
+  }
+
+  /**
+   * Sorts the array with a bitonic sorting network, whose sequence of
+   * compare-exchanges depends only on the length of the array and not on its
+   * values, so the time it takes for a given length barely varies. An array
+   * whose length is not a power of two is copied into one that is, padded
+   * with Integer.MAX_VALUE, which the network sorts to the end.
+   *
+   * The network of m = 2^p elements runs p(p + 1) / 2 stages (k, j), for k
+   * from 2 to m and j from k / 2 down to 1, each compare-exchanging every
+   * element i whose bit j is clear with element i + j, in ascending order if
+   * bit k of i is clear and in descending order otherwise. A stage touches the
+   * whole array, so the stages with j below BITONIC_BLOCK are run one block of
+   * BITONIC_BLOCK elements at a time, all stages of a block in a row.
+   *
+   * When jdk.incubator.vector is available and vector/VectorBitonicKernel.java
+   * has been compiled, the compare-exchanges are done with vector min and max.
+   *
+   * @param array the array to sort, of at most MAX_BITONIC_LENGTH elements
+   * @throws IllegalArgumentException if the array is longer than
+   *                                  MAX_BITONIC_LENGTH
+   */
+  public static void bitonicSort(int[] array) {
+    bitonicSort(array, null, BITONIC_BLOCK);
+  }
+
+  /**
+   * Sorts the array with the bitonic network of bitonicSort(int[]), in blocks
+   * of the given power of two, running the blocks of every stage as
+   * ChunkTasks on the pool or, if the pool is null, in order on this thread.
+   */
+  private static void bitonicSort(int[] array, ForkJoinPool pool, int block) {
     int n = array.length;
-    for (int i = 2; i <= n; i = i * 2) {
-      for (int j = 0; j < n; j += i) {
-        bitonicMerge(array, j, i);
+    if (n > MAX_BITONIC_LENGTH)
+      throw new IllegalArgumentException("Cannot bitonic sort more than " + MAX_BITONIC_LENGTH + " elements: " + n);
+    if (n < 2)
+      return;
+
+    int m = Integer.highestOneBit(n - 1) << 1;
+    int[] network = array;
+    if (m != n) {
+      network = Arrays.copyOf(array, m);
+      Arrays.fill(network, n, m, Integer.MAX_VALUE);
+    }
+
+    // Sort every block, ascending and descending in turn, which makes every
+    // pair of neighbouring blocks a bitonic sequence
+    int[] a = network;
+    int size = Math.min(block, m);
+    int blocks = m / size;
+    int pairsPerBlock = size / 2;
+    forEachChunk(pool, blocks, b -> {
+      for (int k = 2; k <= size; k <<= 1)
+        bitonicStages(a, k, k / 2, b * pairsPerBlock, (b + 1) * pairsPerBlock);
+    });
+
+    // Merge the blocks: the stages that cross blocks one at a time, then the
+    // rest of each merge block by block
+    for (int k = 2 * size; k <= m; k <<= 1) {
+      int stage = k;
+      for (int j = k / 2; j >= size; j /= 2) {
+        int distance = j;
+        forEachChunk(pool, blocks, b -> bitonicStage(a, stage, distance, b * pairsPerBlock, (b + 1) * pairsPerBlock));
       }
+      forEachChunk(pool, blocks, b -> bitonicStages(a, stage, size / 2, b * pairsPerBlock, (b + 1) * pairsPerBlock));
     }
+
+    if (network != array)
+      System.arraycopy(network, 0, array, 0, n);
   }
 
-  private static void bitonicMerge(int[] array, int start, int size) {
-    if (size > 1) {
-      int mid = size / 2;
-      for (int i = start; i < start + mid; i++) {
-        if (array[i] > array[i + mid]) {
-          swap(array, i, i + mid);
-        }
+  /**
+   * Runs the stages (k, j), (k, j / 2), ..., (k, 1) of the bitonic network on
+   * the pairs [fromPair, toPair), which must cover whole blocks of 2j
+   * elements.
+   */
+  private static void bitonicStages(int[] array, int k, int j, int fromPair, int toPair) {
+    for (; j > 0; j /= 2)
+      bitonicStage(array, k, j, fromPair, toPair);
+  }
+
+  /**
+   * Runs the pairs [fromPair, toPair) of the stage (k, j) of the bitonic
+   * network. Pair p is the element i whose bit j is clear, made of the bits
+   * of p above j shifted left by one and the bits of p below j, and element
+   * i + j. Consecutive pairs up to the next multiple of j compare-exchange
+   * consecutive elements in the same direction, so they go to the kernel
+   * together.
+   */
+  private static void bitonicStage(int[] array, int k, int j, int fromPair, int toPair) {
+    for (int p = fromPair; p < toPair;) {
+      int i = (p & -j) << 1 | p & (j - 1);
+      int end = Math.min((p | (j - 1)) + 1, toPair);
+      BITONIC_KERNEL.compareExchange(array, i, j, end - p, (i & k) == 0);
+      p = end;
+    }
+  }
+
+  /** The scalar BitonicKernel, with min and max rather than a branch */
+  private static void compareExchange(int[] array, int i, int j, int count, boolean ascending) {
+    if (ascending) {
+      for (int t = i; t < i + count; t++) {
+        int x = array[t];
+        int y = array[t + j];
+        array[t] = Math.min(x, y);
+        array[t + j] = Math.max(x, y);
+      }
+    } else {
+      for (int t = i; t < i + count; t++) {
+        int x = array[t];
+        int y = array[t + j];
+        array[t] = Math.max(x, y);
+        array[t + j] = Math.min(x, y);
       }
-      bitonicMerge(array, start, mid);
-      bitonicMerge(array, start + mid, mid);
     }
   }
 
@@ -755,6 +1824,476 @@ public class SortingAlgs {
     }
   }
 
+  /**
+   * Sorts the array with a parallel merge sort on the common pool, with the
+   * default cutoff. See parallelMergeSort(int[], ForkJoinPool, int).
+   *
+   * @param array the array to sort
+   */
+  public static void parallelMergeSort(int[] array) {
+    parallelMergeSort(array, ForkJoinPool.commonPool(), PARALLEL_CUTOFF);
+  }
+
+  /**
+   * Sorts the array with a parallel merge sort. The two halves of each range
+   * are sorted as separate tasks and then merged in parallel too: the middle
+   * element of the longer half is binary searched in the shorter one, which
+   * splits the merge into two independent merges on either side of it. Ranges
+   * of at most cutoff elements are sorted or merged by a single task. The
+   * levels alternate between the array and one buffer of n elements, so the
+   * result is never copied back.
+   *
+   * @param array  the array to sort
+   * @param pool   the pool to run the tasks on
+   * @param cutoff the largest range sorted or merged sequentially, at least 1
+   */
+  public static void parallelMergeSort(int[] array, ForkJoinPool pool, int cutoff) {
+    if (array.length <= cutoff) {
+      mergeSort(array);
+      return;
+    }
+    pool.invoke(new MergeSortTask(array, new int[array.length], 0, array.length, false, cutoff));
+  }
+
+  /**
+   * Sorts the array with a parallel three-way quicksort on the common pool,
+   * with the default cutoff. See parallelThreeWayQuickSort(int[], ForkJoinPool,
+   * int).
+   *
+   * @param array the array to sort
+   */
+  public static void parallelThreeWayQuickSort(int[] array) {
+    parallelThreeWayQuickSort(array, ForkJoinPool.commonPool(), PARALLEL_CUTOFF);
+  }
+
+  /**
+   * Sorts the array with a parallel three-way quicksort. Each range is split
+   * around the median of its first, middle and last elements into the elements
+   * below, equal to and above it, and the parts below and above are sorted as
+   * separate tasks. Since the equal elements are done after one pass, inputs
+   * with many duplicates split quickly. Ranges of at most cutoff elements are
+   * sorted by a single task with the same algorithm.
+   *
+   * @param array  the array to sort
+   * @param pool   the pool to run the tasks on
+   * @param cutoff the largest range sorted sequentially, at least 1
+   */
+  public static void parallelThreeWayQuickSort(int[] array, ForkJoinPool pool, int cutoff) {
+    if (array.length <= cutoff) {
+      threeWayQuickSortRange(array, 0, array.length);
+      return;
+    }
+    pool.invoke(new ThreeWayQuickSortTask(array, 0, array.length, cutoff));
+  }
+
+  /**
+   * Sorts the array with a parallel radix sort on the common pool, with the
+   * default cutoff. See parallelRadixSort(int[], ForkJoinPool, int).
+   *
+   * @param array the array to sort
+   */
+  public static void parallelRadixSort(int[] array) {
+    parallelRadixSort(array, ForkJoinPool.commonPool(), PARALLEL_CUTOFF);
+  }
+
+  /**
+   * Sorts the array with a parallel version of the byte-wise LSD radix sort of
+   * radixSort(int[], int, int, int[]). The array is cut into chunks of at
+   * least cutoff elements, a few per thread of the pool. Each pass over a
+   * digit then:
+   * 1. counts the digits of every chunk into its own histogram, in parallel
+   * 2. turns the histograms into the first output index of each (bucket,
+   * chunk) pair, bucket by bucket and chunk by chunk, so the sort stays stable
+   * 3. moves the elements of every chunk to their buckets, in parallel
+   * Digits that every element shares are skipped, as in the sequential sort.
+   *
+   * @param array  the array to sort
+   * @param pool   the pool to run the tasks on
+   * @param cutoff the smallest chunk, at least 1. Arrays of at most cutoff
+   *               elements are sorted sequentially.
+   */
+  public static void parallelRadixSort(int[] array, ForkJoinPool pool, int cutoff) {
+    int n = array.length;
+    if (n <= cutoff) {
+      radixSort(array);
+      return;
+    }
+
+    int chunks = (int) Math.min((long) n / cutoff, 4L * pool.getParallelism());
+    chunks = Math.max(chunks, 1);
+    int[][] counts = new int[chunks][RADIX];
+    int[] scratch = new int[n];
+    int[][] buffers = { array, scratch };
+    int source = 0;
+    for (int digit = 0; digit < Integer.BYTES; digit++) {
+      int[] src = buffers[source];
+      int[] dst = buffers[1 - source];
+      int shift = 8 * digit;
+      int chunkCount = chunks;
+
+      pool.invoke(new ChunkTask(0, chunks, chunk -> {
+        int[] count = counts[chunk];
+        Arrays.fill(count, 0);
+        for (int i = chunkStart(chunk, chunkCount, n); i < chunkStart(chunk + 1, chunkCount, n); i++) {
+          count[(src[i] ^ Integer.MIN_VALUE) >>> shift & 0xFF]++;
+        }
+      }));
+
+      // Every element in one bucket means the digit is constant
+      int sample = (src[0] ^ Integer.MIN_VALUE) >>> shift & 0xFF;
+      int total = 0;
+      for (int[] count : counts) {
+        total += count[sample];
+      }
+      if (total == n)
+        continue;
+
+      int offset = 0;
+      for (int bucket = 0; bucket < RADIX; bucket++) {
+        for (int[] count : counts) {
+          int c = count[bucket];
+          count[bucket] = offset;
+          offset += c;
+        }
+      }
+
+      pool.invoke(new ChunkTask(0, chunks, chunk -> {
+        int[] next = counts[chunk];
+        for (int i = chunkStart(chunk, chunkCount, n); i < chunkStart(chunk + 1, chunkCount, n); i++) {
+          int value = src[i];
+          dst[next[(value ^ Integer.MIN_VALUE) >>> shift & 0xFF]++] = value;
+        }
+      }));
+      source = 1 - source;
+    }
+    if (source == 1)
+      System.arraycopy(scratch, 0, array, 0, n);
+  }
+
+  /**
+   * Sorts the array with a parallel bucket sort on the common pool, with the
+   * default cutoff. See parallelBucketSort(int[], ForkJoinPool, int).
+   *
+   * @param array the array to sort
+   */
+  public static void parallelBucketSort(int[] array) {
+    parallelBucketSort(array, ForkJoinPool.commonPool(), PARALLEL_CUTOFF);
+  }
+
+  /**
+   * Sorts the array with the bucket sort of bucketSort(int[]), sorting the
+   * buckets in parallel. The elements are counted and moved into their
+   * buckets sequentially; the buckets are then cut into groups of consecutive
+   * buckets, a few per thread of the pool, and every group is sorted and
+   * copied back by its own task.
+   *
+   * @param array  the array to sort
+   * @param pool   the pool to run the tasks on
+   * @param cutoff the smallest number of elements per group on average, at
+   *               least 1. Arrays of at most cutoff elements are sorted
+   *               sequentially.
+   */
+  public static void parallelBucketSort(int[] array, ForkJoinPool pool, int cutoff) {
+    int n = array.length;
+    if (n <= cutoff) {
+      bucketSort(array);
+      return;
+    }
+
+    int[] buffer = new int[n];
+    int[] starts = scatterIntoBuckets(array, buffer);
+    if (starts == null)
+      return;
+    int buckets = starts.length - 1;
+    int groups = (int) Math.min(Math.min((long) n / cutoff, 4L * pool.getParallelism()), buckets);
+    pool.invoke(new ChunkTask(0, groups, group -> sortBuckets(array, buffer, starts,
+        chunkStart(group, groups, buckets), chunkStart(group + 1, groups, buckets))));
+  }
+
+  /**
+   * Sorts the array with a parallel bitonic sort on the common pool, with the
+   * default cutoff. See parallelBitonicSort(int[], ForkJoinPool, int).
+   *
+   * @param array the array to sort, of at most MAX_BITONIC_LENGTH elements
+   */
+  public static void parallelBitonicSort(int[] array) {
+    parallelBitonicSort(array, ForkJoinPool.commonPool(), PARALLEL_CUTOFF);
+  }
+
+  /**
+   * Sorts the array with the bitonic network of bitonicSort(int[]), running
+   * the compare-exchanges of every stage in parallel. Those of one stage are
+   * independent of each other, so the padded array is cut into blocks of the
+   * largest power of two up to cutoff elements, one task each:
+   * 1. every block is sorted by its own task
+   * 2. every stage that crosses blocks is run with one task per block and
+   * the pool joined before the next stage
+   * 3. the rest of every merge stays within blocks and takes one task per
+   * block for all its stages
+   *
+   * @param array  the array to sort, of at most MAX_BITONIC_LENGTH elements
+   * @param pool   the pool to run the tasks on
+   * @param cutoff the largest block, at least 2. Arrays of at most cutoff
+   *               elements are sorted sequentially.
+   * @throws IllegalArgumentException if the array is longer than
+   *                                  MAX_BITONIC_LENGTH
+   */
+  public static void parallelBitonicSort(int[] array, ForkJoinPool pool, int cutoff) {
+    if (array.length <= cutoff) {
+      bitonicSort(array);
+      return;
+    }
+    bitonicSort(array, pool, Integer.highestOneBit(Math.max(cutoff, 2)));
+  }
+
+  /**
+   * Runs body for every chunk in [0, chunks), as ChunkTasks on the pool, or
+   * in order on this thread if the pool is null.
+   */
+  private static void forEachChunk(ForkJoinPool pool, int chunks, IntConsumer body) {
+    if (pool == null || chunks == 1) {
+      for (int chunk = 0; chunk < chunks; chunk++)
+        body.accept(chunk);
+      return;
+    }
+    pool.invoke(new ChunkTask(0, chunks, body));
+  }
+
+  /** Index of the first element of a chunk when n elements are cut into chunks */
+  private static int chunkStart(int chunk, int chunks, int n) {
+    return (int) ((long) n * chunk / chunks);
+  }
+
+  /**
+   * Merges the sorted ranges [lo1, hi1) and [lo2, hi2) of src into dst from
+   * index out.
+   */
+  private static void mergeRanges(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out) {
+    while (lo1 < hi1 && lo2 < hi2) {
+      dst[out++] = src[lo2] < src[lo1] ? src[lo2++] : src[lo1++];
+    }
+    System.arraycopy(src, lo1, dst, out, hi1 - lo1);
+    System.arraycopy(src, lo2, dst, out + hi1 - lo1, hi2 - lo2);
+  }
+
+  /**
+   * Returns the index of the first element of the sorted range [from, to) that
+   * is not less than key, or to if there is none.
+   */
+  private static int lowerBound(int[] array, int from, int to, int key) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      if (array[mid] < key) {
+        from = mid + 1;
+      } else {
+        to = mid;
+      }
+    }
+    return from;
+  }
+
+  /**
+   * Sorts the range [from, to) of the array with a three-way quicksort using a
+   * median of three pivot, insertion sorting ranges of up to
+   * INSERTION_SORT_THRESHOLD elements. Recurses into the smaller part and loops
+   * on the larger one, so the stack stays O(log n) deep.
+   */
+  private static void threeWayQuickSortRange(int[] array, int from, int to) {
+    while (to - from > INSERTION_SORT_THRESHOLD) {
+      long bounds = partitionThreeWay(array, from, to);
+      int lt = (int) (bounds >>> 32);
+      int gt = (int) bounds;
+      if (lt - from < to - gt) {
+        threeWayQuickSortRange(array, from, lt);
+        from = gt;
+      } else {
+        threeWayQuickSortRange(array, gt, to);
+        to = lt;
+      }
+    }
+    insertionSort2(array, from, to);
+  }
+
+  /**
+   * Partitions the range [from, to) of the array around the median of its
+   * first, middle and last elements into the elements below, equal to and
+   * above the pivot.
+   *
+   * @return the bounds lt and gt of the elements equal to the pivot, [lt, gt),
+   *         packed into one long as lt << 32 | gt
+   */
+  private static long partitionThreeWay(int[] array, int from, int to) {
+    int a = array[from];
+    int b = array[(from + to) >>> 1];
+    int c = array[to - 1];
+    int pivot = Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+
+    int lt = from;
+    int i = from;
+    int gt = to;
+    while (i < gt) {
+      int value = array[i];
+      if (value < pivot) {
+        swap(array, lt++, i++);
+      } else if (value > pivot) {
+        swap(array, i, --gt);
+      } else {
+        i++;
+      }
+    }
+    return (long) lt << 32 | gt;
+  }
+
+  /**
+   * Sorts the range [from, to) of array for parallelMergeSort, leaving the
+   * result in the buffer if intoBuffer is set and in the array otherwise.
+   */
+  private static final class MergeSortTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] array;
+    private final int[] buffer;
+    private final int from;
+    private final int to;
+    private final boolean intoBuffer;
+    private final int cutoff;
+
+    MergeSortTask(int[] array, int[] buffer, int from, int to, boolean intoBuffer, int cutoff) {
+      this.array = array;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+      this.intoBuffer = intoBuffer;
+      this.cutoff = cutoff;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= cutoff) {
+        mergeSort(array, from, to, buffer, from);
+        if (intoBuffer) {
+          System.arraycopy(array, from, buffer, from, to - from);
+        }
+        return;
+      }
+
+      // Sort the halves into the other array, then merge them into this one
+      int mid = (from + to) >>> 1;
+      invokeAll(new MergeSortTask(array, buffer, from, mid, !intoBuffer, cutoff),
+          new MergeSortTask(array, buffer, mid, to, !intoBuffer, cutoff));
+      int[] src = intoBuffer ? array : buffer;
+      int[] dst = intoBuffer ? buffer : array;
+      new MergeTask(src, from, mid, mid, to, dst, from, cutoff).compute();
+    }
+  }
+
+  /**
+   * Merges the sorted ranges [lo1, hi1) and [lo2, hi2) of src into dst from
+   * index out for parallelMergeSort.
+   */
+  private static final class MergeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] src;
+    private final int lo1;
+    private final int hi1;
+    private final int lo2;
+    private final int hi2;
+    private final int[] dst;
+    private final int out;
+    private final int cutoff;
+
+    MergeTask(int[] src, int lo1, int hi1, int lo2, int hi2, int[] dst, int out, int cutoff) {
+      this.src = src;
+      this.lo1 = lo1;
+      this.hi1 = hi1;
+      this.lo2 = lo2;
+      this.hi2 = hi2;
+      this.dst = dst;
+      this.out = out;
+      this.cutoff = cutoff;
+    }
+
+    @Override
+    protected void compute() {
+      if (hi1 - lo1 + hi2 - lo2 <= cutoff) {
+        mergeRanges(src, lo1, hi1, lo2, hi2, dst, out);
+        return;
+      }
+
+      // Split the longer range in the middle and the shorter one around that element
+      boolean firstLonger = hi1 - lo1 >= hi2 - lo2;
+      int longLo = firstLonger ? lo1 : lo2;
+      int longHi = firstLonger ? hi1 : hi2;
+      int shortLo = firstLonger ? lo2 : lo1;
+      int shortHi = firstLonger ? hi2 : hi1;
+      int longMid = (longLo + longHi) >>> 1;
+      int shortMid = lowerBound(src, shortLo, shortHi, src[longMid]);
+      int outMid = out + (longMid - longLo) + (shortMid - shortLo);
+      dst[outMid] = src[longMid];
+      invokeAll(new MergeTask(src, longLo, longMid, shortLo, shortMid, dst, out, cutoff),
+          new MergeTask(src, longMid + 1, longHi, shortMid, shortHi, dst, outMid + 1, cutoff));
+    }
+  }
+
+  /**
+   * Sorts the range [from, to) of the array for parallelThreeWayQuickSort.
+   */
+  private static final class ThreeWayQuickSortTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] array;
+    private final int from;
+    private final int to;
+    private final int cutoff;
+
+    ThreeWayQuickSortTask(int[] array, int from, int to, int cutoff) {
+      this.array = array;
+      this.from = from;
+      this.to = to;
+      this.cutoff = cutoff;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= cutoff) {
+        threeWayQuickSortRange(array, from, to);
+        return;
+      }
+      long bounds = partitionThreeWay(array, from, to);
+      invokeAll(new ThreeWayQuickSortTask(array, from, (int) (bounds >>> 32), cutoff),
+          new ThreeWayQuickSortTask(array, (int) bounds, to, cutoff));
+    }
+  }
+
+  /**
+   * Runs a body once for every chunk in [from, to), splitting the range in
+   * half until each task has one chunk.
+   */
+  private static final class ChunkTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int from;
+    private final int to;
+    private final IntConsumer body;
+
+    ChunkTask(int from, int to, IntConsumer body) {
+      this.from = from;
+      this.to = to;
+      this.body = body;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from == 1) {
+        body.accept(from);
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new ChunkTask(from, mid, body), new ChunkTask(mid, to, body));
+    }
+  }
+
   public static void printTableResults(HashMap<String, Double> sortingAlgorithms) {
     System.out.println("Sorting Algorithm\t\tExecution Time (ms)\tExecution Time (s)");
     sortingAlgorithms.entrySet().stream()
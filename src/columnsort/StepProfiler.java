@@ -0,0 +1,208 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * StepProfiler records a breakdown of where the time goes in a run of
+ * columnsort. Each step of the algorithm is run through record(), which
+ * measures:
+ * - the elapsed wall-clock time, from System.nanoTime
+ * - the bytes allocated by all live threads while the step ran, so column
+ * sorts on a ForkJoinPool are included (needs com.sun.management)
+ * - the number of element moves and comparisons, if the step reports them
+ * through addMoves and addComparisons
+ *
+ * Counts a step does not report are unknown rather than zero, and are written
+ * as null in JSON and left empty in CSV. addMoves and addComparisons may be
+ * called from several threads at once.
+ */
+public final class StepProfiler {
+
+  /** Value of a count that was not measured */
+  public static final long UNKNOWN = -1;
+
+  /**
+   * Immutable measurements of one step.
+   */
+  public static final class Step {
+    public final String name;
+    public final long nanos;
+    public final long moves;
+    public final long comparisons;
+    public final long allocatedBytes;
+
+    Step(String name, long nanos, long moves, long comparisons, long allocatedBytes) {
+      this.name = name;
+      this.nanos = nanos;
+      this.moves = moves;
+      this.comparisons = comparisons;
+      this.allocatedBytes = allocatedBytes;
+    }
+  }
+
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+  private final List<Step> steps = new ArrayList<>();
+  private final LongAdder moves = new LongAdder();
+  private final LongAdder comparisons = new LongAdder();
+  private volatile boolean movesCounted;
+  private volatile boolean comparisonsCounted;
+
+  /** Source of per-thread allocation counts, or null if unsupported */
+  private final com.sun.management.ThreadMXBean threads;
+
+  public StepProfiler() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean
+        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+      threads = (com.sun.management.ThreadMXBean) bean;
+      threads.setThreadAllocatedMemoryEnabled(true);
+    } else {
+      threads = null;
+    }
+  }
+
+  /**
+   * Adds a value to the top level of the report, such as the input size.
+   *
+   * @param key   the name of the value
+   * @param value a number, or anything else to be written as a string
+   */
+  public void attribute(String key, Object value) {
+    attributes.put(key, value);
+  }
+
+  /**
+   * Runs the step and records its measurements.
+   *
+   * @param name the name of the step in the report
+   * @param body the step to run
+   */
+  public void record(String name, Runnable body) {
+    moves.reset();
+    comparisons.reset();
+    movesCounted = false;
+    comparisonsCounted = false;
+
+    long allocatedBefore = allocatedBytes();
+    long startTime = System.nanoTime();
+    body.run();
+    long endTime = System.nanoTime();
+    long allocatedAfter = allocatedBytes();
+
+    steps.add(new Step(name, endTime - startTime,
+        movesCounted ? moves.sum() : UNKNOWN,
+        comparisonsCounted ? comparisons.sum() : UNKNOWN,
+        allocatedBefore == UNKNOWN ? UNKNOWN : Math.max(0, allocatedAfter - allocatedBefore)));
+  }
+
+  /**
+   * Adds to the number of element moves made by the current step.
+   *
+   * @param count the number of moves
+   */
+  public void addMoves(long count) {
+    moves.add(count);
+    movesCounted = true;
+  }
+
+  /**
+   * Adds to the number of comparisons made by the current step.
+   *
+   * @param count the number of comparisons
+   */
+  public void addComparisons(long count) {
+    comparisons.add(count);
+    comparisonsCounted = true;
+  }
+
+  /**
+   * Returns the recorded steps, in the order they ran.
+   */
+  public List<Step> steps() {
+    return Collections.unmodifiableList(steps);
+  }
+
+  /**
+   * Returns the report as a JSON object holding the attributes, the total
+   * time, and an array of steps.
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{");
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      json.append('"').append(attribute.getKey()).append("\": ");
+      Object value = attribute.getValue();
+      if (value instanceof Number) {
+        json.append(value);
+      } else {
+        json.append('"').append(value).append('"');
+      }
+      json.append(", ");
+    }
+    json.append("\"totalNanos\": ").append(totalNanos()).append(", \"steps\": [");
+    for (int i = 0; i < steps.size(); i++) {
+      Step step = steps.get(i);
+      json.append(i == 0 ? "\n  " : ",\n  ")
+          .append("{\"step\": \"").append(step.name)
+          .append("\", \"nanos\": ").append(step.nanos)
+          .append(", \"moves\": ").append(jsonCount(step.moves))
+          .append(", \"comparisons\": ").append(jsonCount(step.comparisons))
+          .append(", \"allocatedBytes\": ").append(jsonCount(step.allocatedBytes))
+          .append('}');
+    }
+    return json.append("\n]}").toString();
+  }
+
+  /**
+   * Returns the steps as CSV with a header row. Attributes are not included.
+   */
+  public String toCsv() {
+    StringBuilder csv = new StringBuilder("step,nanos,moves,comparisons,allocated_bytes\n");
+    for (Step step : steps) {
+      csv.append(step.name).append(',')
+          .append(step.nanos).append(',')
+          .append(csvCount(step.moves)).append(',')
+          .append(csvCount(step.comparisons)).append(',')
+          .append(csvCount(step.allocatedBytes)).append('\n');
+    }
+    return csv.toString();
+  }
+
+  /**
+   * Returns the sum of the elapsed times of all steps.
+   */
+  public long totalNanos() {
+    long total = 0;
+    for (Step step : steps) {
+      total += step.nanos;
+    }
+    return total;
+  }
+
+  /**
+   * Returns the bytes allocated so far by all live threads, or UNKNOWN.
+   */
+  private long allocatedBytes() {
+    if (threads == null) {
+      return UNKNOWN;
+    }
+    long total = 0;
+    for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      if (bytes > 0) {
+        total += bytes;
+      }
+    }
+    return total;
+  }
+
+  private static String jsonCount(long count) {
+    return count == UNKNOWN ? "null" : Long.toString(count);
+  }
+
+  private static String csvCount(long count) {
+    return count == UNKNOWN ? "" : Long.toString(count);
+  }
+}
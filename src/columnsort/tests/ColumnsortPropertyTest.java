@@ -0,0 +1,396 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * ColumnsortPropertyTest checks every columnsort implementation against
+ * Arrays.sort and measures its throughput across input sizes.
+ *
+ * Properties checked:
+ * 1. For every n from 8 up to the maximum, the dimension table gives a valid
+ * matrix (r >= 2(s - 1)^2, s divides r, r even, r * s <= n), and the tail
+ * overflow partition has at most 4 elements for n < 8192, as Prog3 documents.
+ * 2. For every n from 1 up to the maximum, plus a few random larger n, and for
+ * every input distribution, each implementation sorts the input exactly as
+ * Arrays.sort does.
+ * 3. The same holds for inputs of many duplicates and of one repeated value
+ * with columns of over 30,000 rows, where a column kernel that handles equal
+ * keys badly takes quadratic time or overflows the stack.
+ * 4. DistributedColumnsort, on workers started as local JVMs as with
+ * --spawn=3, sorts binary and text files as Arrays.sort does. The inputs
+ * include an empty one and tiny ones, whose matrix has fewer columns than
+ * there are workers.
+ * 5. ColumnSorter.vector() sorts every range [n/4, n - n/5) of the property 2
+ * and 3 inputs as Arrays.sort does, leaving the rest of the array untouched.
+ * With --vector=required the program fails unless that is the Vector API
+ * kernel rather than its ADAPTIVE fallback.
+ *
+ * The implementations are both engines of Prog3 with and without padding
+ * (the linked list engine is the one with the sentinel-based shift steps),
+ * the reusable Columnsort class with the default and the vector kernel,
+ * ColumnSorter.vector() on the whole input, and PrimitiveColumnsort on the
+ * widened input. The distributions include the sentinel values Integer.MIN_VALUE and
+ * Integer.MAX_VALUE, which is where sentinel-based steps are most likely to
+ * break.
+ *
+ * Every failure is reported with the implementation, distribution, n, the
+ * matrix dimensions and the first wrong element, and the program exits with
+ * status 1 if there were any. Throughput is printed per implementation and
+ * size bucket (powers of two), and with --csv written for every n.
+ *
+ * Compilation: javac -encoding UTF-8 -d <dir> *.java tests/PropertyTestSupport.java tests/ColumnsortPropertyTest.java
+ *              (from src/columnsort, or run tests/run_property_tests.sh, which
+ *              also runs it with the vector kernels)
+ * Execution: java -cp <dir> ColumnsortPropertyTest [--max-n=<n>] [--large=<count>]
+ *            [--max-large-n=<n>] [--tall-n=<n>] [--spawn=<count>] [--vector=auto|required]
+ *            [--seed=<seed>] [--csv=<file>]
+ */
+public class ColumnsortPropertyTest {
+
+  /** Largest n tested exhaustively unless --max-n is given */
+  private static final int DEFAULT_MAX_N = 20000;
+
+  /** Number of random n past the maximum tested unless --large is given */
+  private static final int DEFAULT_LARGE = 3;
+
+  /** Largest random n unless --max-large-n is given */
+  private static final int DEFAULT_MAX_LARGE_N = 1 << 21;
+
+  /**
+   * Size of the property 3 inputs unless --tall-n is given, the smallest power
+   * of two whose matrix has columns of over 30,000 rows (32,768 by 128)
+   */
+  private static final int DEFAULT_TALL_N = 1 << 22;
+
+  /** Distributions of property 3 */
+  private static final PropertyTestSupport.Distribution[] TALL_DISTRIBUTIONS = {
+      PropertyTestSupport.Distribution.DUPLICATES, PropertyTestSupport.Distribution.ALL_EQUAL };
+
+  /** Number of workers of property 4 unless --spawn is given */
+  private static final int DEFAULT_SPAWN = 3;
+
+  /**
+   * Sizes of the property 4 inputs, which alternate between binary and text
+   * files
+   */
+  private static final int[] DISTRIBUTED_SIZES = { 0, 1, 5, 100, 20000, 1 << 18 };
+
+  /** Name of property 4 in the report */
+  private static final String DISTRIBUTED = "DistributedColumnsort";
+
+  /** Name of property 5 in the report */
+  private static final String VECTOR_RANGE = "ColumnSorter.vector() range";
+
+  /** The kernel of property 5, or ADAPTIVE without the Vector API */
+  private static final ColumnSorter VECTOR = ColumnSorter.vector();
+
+  /** Largest n for which the tail must have at most MAX_TAIL elements */
+  private static final int SMALL_TABLE_SIZE = 8192;
+
+  /** Largest tail documented by Prog3 for n < SMALL_TABLE_SIZE */
+  private static final int MAX_TAIL = 4;
+
+  /**
+   * Distributions of property 2, every one but NEARLY_SORTED and
+   * FREQUENT_VALUE, which take the same path through columnsort as SORTED and
+   * RANDOM
+   */
+  private static final PropertyTestSupport.Distribution[] DISTRIBUTIONS = { PropertyTestSupport.Distribution.RANDOM,
+      PropertyTestSupport.Distribution.SORTED, PropertyTestSupport.Distribution.REVERSED,
+      PropertyTestSupport.Distribution.DUPLICATES, PropertyTestSupport.Distribution.ALL_EQUAL,
+      PropertyTestSupport.Distribution.NEGATIVES, PropertyTestSupport.Distribution.EXTREMES };
+
+  /** Implementations under test, by name */
+  private static final Map<String, Consumer<int[]>> IMPLEMENTATIONS = new LinkedHashMap<>();
+
+  static {
+    Columnsort columnsort = new Columnsort();
+    IMPLEMENTATIONS.put("Prog3 list", array -> Prog3.sort(array));
+    IMPLEMENTATIONS.put("Prog3 list --pad", array -> Prog3.sort(array, "--pad"));
+    IMPLEMENTATIONS.put("Prog3 flat", array -> Prog3.sort(array, "--engine=flat"));
+    IMPLEMENTATIONS.put("Prog3 flat --pad", array -> Prog3.sort(array, "--engine=flat", "--pad"));
+    IMPLEMENTATIONS.put("Columnsort", columnsort::sort);
+    IMPLEMENTATIONS.put("Columnsort vector", new Columnsort(VECTOR, null)::sort);
+    IMPLEMENTATIONS.put("ColumnSorter.vector()", array -> VECTOR.sort(array, 0, array.length));
+    IMPLEMENTATIONS.put("PrimitiveColumnsort", array -> {
+      long[] widened = new long[array.length];
+      for (int i = 0; i < array.length; i++) {
+        widened[i] = array[i];
+      }
+      PrimitiveColumnsort.sort(widened);
+      for (int i = 0; i < array.length; i++) {
+        array[i] = (int) widened[i];
+      }
+    });
+  }
+
+  private static int maxN = DEFAULT_MAX_N;
+  private static int large = DEFAULT_LARGE;
+  private static int maxLargeN = DEFAULT_MAX_LARGE_N;
+  private static int tallN = DEFAULT_TALL_N;
+  private static int spawn = DEFAULT_SPAWN;
+  private static long seed = 345;
+  private static String csvPath = null;
+
+  private static final String USAGE = "Usage: java ColumnsortPropertyTest [--max-n=<n>] [--large=<count>]"
+      + " [--max-large-n=<n>] [--tall-n=<n>] [--spawn=<count>] [--vector=auto|required] [--seed=<seed>]"
+      + " [--csv=<file>]";
+
+  /**
+   * Failures of each implementation, with "dimension table" for property 1
+   * and VECTOR_RANGE for property 5
+   */
+  private static final PropertyTestSupport.Report report = new PropertyTestSupport.Report();
+
+  /** Elements sorted and nanoseconds spent by each implementation per bucket */
+  private static final Map<String, long[]> elements = new LinkedHashMap<>();
+  private static final Map<String, long[]> nanos = new LinkedHashMap<>();
+
+  public static void main(String[] args) throws IOException {
+    parseOptions(args);
+    for (String name : IMPLEMENTATIONS.keySet()) {
+      report.add(name);
+      elements.put(name, new long[32]);
+      nanos.put(name, new long[32]);
+    }
+    report.add("dimension table");
+    report.add(VECTOR_RANGE);
+    if (spawn > 0) {
+      report.add(DISTRIBUTED);
+    }
+
+    System.out.println("Checking the dimension table for n = 8.." + maxN);
+    checkDimensionTable();
+
+    PrintWriter csv = csvPath == null ? null : new PrintWriter(Files.newBufferedWriter(Paths.get(csvPath)));
+    if (csv != null) {
+      csv.println("n,implementation,nanos,ints_per_second");
+    }
+
+    System.out.println("Sorting n = 1.." + maxN + " (seed " + seed + ")");
+    Random random = new Random(seed);
+    for (int n = 1; n <= maxN; n++) {
+      test(n, DISTRIBUTIONS, random, csv);
+    }
+    for (int i = 0; i < large; i++) {
+      int n = maxN + 1 + random.nextInt(Math.max(1, maxLargeN - maxN));
+      System.out.println("Sorting random large n = " + n);
+      test(n, DISTRIBUTIONS, random, csv);
+    }
+    if (tallN > 0) {
+      System.out.println("Sorting duplicates in tall columns, n = " + tallN);
+      test(tallN, TALL_DISTRIBUTIONS, random, csv);
+    }
+    if (csv != null) {
+      csv.close();
+    }
+    if (spawn > 0) {
+      System.out.println("Sorting files on " + spawn + " spawned workers");
+      testDistributed(random);
+    }
+
+    printThroughput();
+    report.exit();
+  }
+
+  /**
+   * Checks property 1 for every n from 8 up to maxN.
+   */
+  private static void checkDimensionTable() {
+    DimensionTable table = DimensionTable.shared();
+    for (int n = Columnsort.MIN_SIZE; n <= maxN; n++) {
+      DimensionPlanner.Plan plan = table.plan(n);
+      long r = plan.rows;
+      long s = plan.cols;
+      String problem = null;
+      if (s < 1 || r < 2 * (s - 1) * (s - 1) || r % s != 0 || r % 2 != 0) {
+        problem = "invalid matrix";
+      } else if (r * s > n) {
+        problem = "matrix larger than the input";
+      } else if (n < SMALL_TABLE_SIZE && plan.remainder() > MAX_TAIL) {
+        problem = "tail of " + plan.remainder() + " elements";
+      }
+      if (problem != null) {
+        report.fail("dimension table", "n = " + n + " (r = " + r + ", s = " + s + "): " + problem);
+      }
+    }
+  }
+
+  /**
+   * Sorts the distributions of size n with every implementation, checking the
+   * result and recording the time.
+   */
+  private static void test(int n, PropertyTestSupport.Distribution[] distributions, Random random, PrintWriter csv) {
+    int bucket = 31 - Integer.numberOfLeadingZeros(n);
+    long[] time = new long[IMPLEMENTATIONS.size()];
+    for (PropertyTestSupport.Distribution distribution : distributions) {
+      int[] input = distribution.generate(n, random);
+      int[] expected = input.clone();
+      Arrays.sort(expected);
+
+      int index = 0;
+      for (Map.Entry<String, Consumer<int[]>> implementation : IMPLEMENTATIONS.entrySet()) {
+        int[] actual = input.clone();
+        long startTime = System.nanoTime();
+        try {
+          implementation.getValue().accept(actual);
+        } catch (RuntimeException | StackOverflowError e) {
+          report.fail(implementation.getKey(), describe(distribution, n) + ": threw " + e);
+          continue;
+        } finally {
+          time[index++] += System.nanoTime() - startTime;
+        }
+        report.check(implementation.getKey(), describe(distribution, n), expected, actual);
+      }
+      checkVectorRange(distribution, input);
+    }
+
+    int index = 0;
+    for (String name : IMPLEMENTATIONS.keySet()) {
+      elements.get(name)[bucket] += (long) n * distributions.length;
+      nanos.get(name)[bucket] += time[index];
+      if (csv != null) {
+        long sorted = (long) n * distributions.length;
+        csv.println(n + "," + name + "," + time[index] + "," + sorted * 1_000_000_000L / Math.max(1, time[index]));
+      }
+      index++;
+    }
+  }
+
+  /**
+   * Checks property 5 for one input, sorting its range [n/4, n - n/5) with
+   * the vector kernel.
+   */
+  private static void checkVectorRange(PropertyTestSupport.Distribution distribution, int[] input) {
+    int n = input.length;
+    int from = n / 4;
+    int to = n - n / 5;
+    int[] expected = input.clone();
+    Arrays.sort(expected, from, to);
+    int[] actual = input.clone();
+    String testCase = distribution + " n = " + n + " range [" + from + ", " + to + ")";
+    try {
+      VECTOR.sort(actual, from, to);
+    } catch (RuntimeException | StackOverflowError e) {
+      report.fail(VECTOR_RANGE, testCase + ": threw " + e);
+      return;
+    }
+    report.check(VECTOR_RANGE, testCase, expected, actual);
+  }
+
+  /**
+   * Checks property 4, sorting each of DISTRIBUTED_SIZES on newly spawned
+   * workers.
+   */
+  private static void testDistributed(Random random) throws IOException {
+    Path dir = Files.createTempDirectory("columnsort");
+    try {
+      for (int i = 0; i < DISTRIBUTED_SIZES.length; i++) {
+        int n = DISTRIBUTED_SIZES[i];
+        PropertyTestSupport.Distribution distribution = DISTRIBUTIONS[i % DISTRIBUTIONS.length];
+        String extension = i % 2 == 0 ? ".bin" : ".txt";
+        Path input = dir.resolve("input" + extension);
+        Path output = dir.resolve("output" + extension);
+        String testCase = distribution + " n = " + n + " in a " + extension + " file";
+
+        int[] values = distribution.generate(n, random);
+        try (OutputWriter writer = OutputWriter.toFile(input, InputLoader.Format.forFile(input))) {
+          writer.write(values);
+        }
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+
+        List<Process> processes = new ArrayList<>();
+        try {
+          List<InetSocketAddress> workers = new ArrayList<>();
+          processes = DistributedColumnsort.spawnWorkers(spawn, workers);
+          DistributedColumnsort.sort(input, output, workers);
+          report.check(DISTRIBUTED, testCase, expected, InputLoader.load(output));
+        } catch (IOException | RuntimeException e) {
+          report.fail(DISTRIBUTED, testCase + ": threw " + e);
+        } finally {
+          for (Process process : processes) {
+            process.destroy();
+          }
+          Files.deleteIfExists(input);
+          Files.deleteIfExists(output);
+        }
+      }
+    } finally {
+      Files.delete(dir);
+    }
+  }
+
+  /**
+   * Returns a description of a test case including its matrix dimensions.
+   */
+  private static String describe(PropertyTestSupport.Distribution distribution, int n) {
+    DimensionPlanner.Plan plan = DimensionTable.shared().plan(n);
+    return distribution + " n = " + n + " (r = " + plan.rows + ", s = " + plan.cols + ", tail = "
+        + plan.remainder() + ")";
+  }
+
+  /**
+   * Prints the throughput of each implementation in millions of ints per
+   * second for each size bucket [2^b, 2^(b+1)).
+   */
+  private static void printThroughput() {
+    StringBuilder header = new StringBuilder(String.format("%-22s", "Throughput (M ints/s)"));
+    int maxBucket = 0;
+    for (long[] counts : elements.values()) {
+      for (int b = 0; b < counts.length; b++) {
+        if (counts[b] > 0) {
+          maxBucket = Math.max(maxBucket, b);
+        }
+      }
+    }
+    for (int b = 0; b <= maxBucket; b++) {
+      header.append(String.format("%9s", "n>=" + shortSize(1L << b)));
+    }
+    System.out.println(header);
+    for (String name : IMPLEMENTATIONS.keySet()) {
+      StringBuilder row = new StringBuilder(String.format("%-22s", name));
+      for (int b = 0; b <= maxBucket; b++) {
+        long count = elements.get(name)[b];
+        long time = nanos.get(name)[b];
+        row.append(count == 0 ? String.format("%9s", "-") : String.format("%9.1f", count * 1000.0 / Math.max(1, time)));
+      }
+      System.out.println(row);
+    }
+  }
+
+  private static String shortSize(long size) {
+    return size >= 1 << 20 ? (size >> 20) + "M" : size >= 1 << 10 ? (size >> 10) + "K" : Long.toString(size);
+  }
+
+  /**
+   * Parses the command line options and checks --vector. Exits the program
+   * with a usage message if they are invalid.
+   */
+  private static void parseOptions(String[] args) {
+    PropertyTestSupport.Options options = new PropertyTestSupport.Options(args, USAGE, "max-n", "large",
+        "max-large-n", "tall-n", "spawn", "vector", "seed", "csv");
+    maxN = options.getInt("max-n", DEFAULT_MAX_N);
+    large = options.getInt("large", DEFAULT_LARGE);
+    maxLargeN = options.getInt("max-large-n", DEFAULT_MAX_LARGE_N);
+    tallN = options.getInt("tall-n", DEFAULT_TALL_N);
+    spawn = options.getInt("spawn", DEFAULT_SPAWN);
+    seed = options.getLong("seed", seed);
+    csvPath = options.getString("csv", null);
+    if (maxN < 1 || large < 0 || maxLargeN < maxN || tallN < 0 || spawn < 0) {
+      options.error("Sizes must be positive, --tall-n may be 0 to skip property 3, --spawn may be 0 to skip"
+          + " property 4, and --max-large-n must be at least --max-n");
+    }
+    PropertyTestSupport.checkVectorKernel("VectorColumnSorter", options, report);
+  }
+}
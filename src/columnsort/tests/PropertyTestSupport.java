@@ -0,0 +1,247 @@
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * PropertyTestSupport holds what the property tests share: the input
+ * distributions, the failure report, the parsing of their --name=value
+ * options, and the check for the Vector API kernels.
+ *
+ * It is compiled together with each test by tests/property_tests.sh.
+ */
+final class PropertyTestSupport {
+
+  private PropertyTestSupport() {
+  }
+
+  /**
+   * Returns whether the Vector API kernel with the given class name can be
+   * used, looked up as ColumnSorter.vector() and SortingAlgs do: its class has
+   * been compiled, the JVM was started with --add-modules
+   * jdk.incubator.vector, and its isSupported() holds.
+   */
+  static boolean vectorKernelLoaded(String className) {
+    try {
+      return (Boolean) Class.forName(className).getMethod("isSupported").invoke(null);
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Prints whether the Vector API kernel with the given class name is in use.
+   * With --vector=required a kernel that is not loaded counts as a failure of
+   * the "vector kernel" check; with --vector=auto, the default, the scalar
+   * fallback is tested instead.
+   */
+  static void checkVectorKernel(String className, Options options, Report report) {
+    String mode = options.getString("vector", "auto");
+    if (!mode.equals("auto") && !mode.equals("required")) {
+      options.error("--vector must be auto or required, got " + mode);
+    }
+    boolean loaded = vectorKernelLoaded(className);
+    System.out.println(className + (loaded ? " loaded" : " not loaded, testing the scalar fallback"));
+    if (mode.equals("required")) {
+      report.add("vector kernel");
+      if (!loaded) {
+        report.fail("vector kernel", className + " is not loaded; compile vector/ and run with --add-modules"
+            + " jdk.incubator.vector");
+      }
+    }
+  }
+
+  /**
+   * Input distributions, each generated from a seeded Random.
+   */
+  enum Distribution {
+    RANDOM, SORTED, REVERSED, NEARLY_SORTED, DUPLICATES, ALL_EQUAL, NEGATIVES, EXTREMES, FREQUENT_VALUE;
+
+    int[] generate(int n, Random random) {
+      int[] array = new int[n];
+      switch (this) {
+        case RANDOM:
+          for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt();
+          }
+          break;
+        case SORTED:
+        case NEARLY_SORTED:
+          for (int i = 0; i < n; i++) {
+            array[i] = i - n / 2;
+          }
+          if (this == NEARLY_SORTED) {
+            // Swap 1% of the elements with a random other one
+            for (int k = 0; k < n / 100; k++) {
+              int i = random.nextInt(n);
+              int j = random.nextInt(n);
+              int temp = array[i];
+              array[i] = array[j];
+              array[j] = temp;
+            }
+          }
+          break;
+        case REVERSED:
+          for (int i = 0; i < n; i++) {
+            array[i] = n / 2 - i;
+          }
+          break;
+        case DUPLICATES:
+          for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt(8);
+          }
+          break;
+        case ALL_EQUAL:
+          Arrays.fill(array, 42);
+          break;
+        case NEGATIVES:
+          for (int i = 0; i < n; i++) {
+            array[i] = -1 - random.nextInt(Integer.MAX_VALUE);
+          }
+          break;
+        case EXTREMES:
+          // Mostly the sentinel values themselves, with a few ordinary values between them
+          for (int i = 0; i < n; i++) {
+            int pick = random.nextInt(5);
+            array[i] = pick == 0 ? Integer.MIN_VALUE : pick == 1 ? random.nextInt() : Integer.MAX_VALUE;
+          }
+          break;
+        case FREQUENT_VALUE:
+          // 3% zeros among random values
+          for (int i = 0; i < n; i++) {
+            array[i] = random.nextInt(100) < 3 ? 0 : random.nextInt();
+          }
+          break;
+        default:
+          throw new AssertionError(this);
+      }
+      return array;
+    }
+  }
+
+  /**
+   * Failures counted per check, printed as they happen and summarised at the
+   * end.
+   */
+  static final class Report {
+
+    /** Number of failures printed per check before the rest are only counted */
+    private static final int MAX_REPORTED_FAILURES = 10;
+
+    /** Failures of each check, in the order the checks were added */
+    private final Map<String, Integer> failures = new LinkedHashMap<>();
+
+    /**
+     * Adds a check, so it is listed in the summary even if it never fails.
+     */
+    void add(String name) {
+      failures.putIfAbsent(name, 0);
+    }
+
+    /**
+     * Counts a failure, printing it if the check has not failed too often
+     * yet.
+     */
+    void fail(String name, String message) {
+      int count = failures.merge(name, 1, Integer::sum);
+      if (count <= MAX_REPORTED_FAILURES) {
+        System.out.println("Failed: " + name + ", " + message);
+      } else if (count == MAX_REPORTED_FAILURES + 1) {
+        System.out.println("Failed: " + name + ", further failures are only counted");
+      }
+    }
+
+    /**
+     * Checks that actual equals expected, counting a failure at the first
+     * element where they differ.
+     */
+    void check(String name, String testCase, int[] expected, int[] actual) {
+      int mismatch = Arrays.mismatch(expected, actual);
+      if (mismatch >= 0) {
+        fail(name, testCase + ": first wrong element at index " + mismatch + ", expected " + expected[mismatch]
+            + " but got " + actual[mismatch]);
+      }
+    }
+
+    /**
+     * Prints whether each check passed and exits the program, with status 1
+     * if any failed.
+     */
+    void exit() {
+      int total = 0;
+      for (Map.Entry<String, Integer> entry : failures.entrySet()) {
+        System.out.println(entry.getKey() + ": " + (entry.getValue() == 0 ? "passed" : entry.getValue() + " failures"));
+        total += entry.getValue();
+      }
+      System.exit(total == 0 ? 0 : 1);
+    }
+  }
+
+  /**
+   * Command line options of the form --name=value. Any other argument, or an
+   * option that is not known, ends the program with the usage message.
+   */
+  static final class Options {
+    private final String usage;
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    /**
+     * @param args  the command line
+     * @param usage the usage message, starting with "Usage: "
+     * @param names the names of the known options, without the leading --
+     */
+    Options(String[] args, String usage, String... names) {
+      this.usage = usage;
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        String name = arg.startsWith("--") && equals > 2 ? arg.substring(2, equals) : null;
+        if (name == null || !Arrays.asList(names).contains(name)) {
+          error("Unknown option " + arg);
+        }
+        values.put(name, arg.substring(equals + 1));
+      }
+    }
+
+    /**
+     * Returns the value of an int option, or the default if it was not given.
+     */
+    int getInt(String name, int defaultValue) {
+      String value = values.get(name);
+      try {
+        return value == null ? defaultValue : Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        error("Invalid number in --" + name + "=" + value);
+        return defaultValue;
+      }
+    }
+
+    /**
+     * Returns the value of a long option, or the default if it was not given.
+     */
+    long getLong(String name, long defaultValue) {
+      String value = values.get(name);
+      try {
+        return value == null ? defaultValue : Long.parseLong(value);
+      } catch (NumberFormatException e) {
+        error("Invalid number in --" + name + "=" + value);
+        return defaultValue;
+      }
+    }
+
+    /**
+     * Returns the value of an option, or the default if it was not given.
+     */
+    String getString(String name, String defaultValue) {
+      return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Prints the error and the usage message and exits the program.
+     */
+    void error(String message) {
+      System.out.println("Error: " + message);
+      System.out.println(usage);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,312 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * SortingAlgsPropertyTest checks the sorting algorithms of SortingAlgs against
+ * Arrays.sort.
+ *
+ * For every n from 0 up to the maximum, plus a few random larger n, and for
+ * every input distribution, each implementation must sort the input exactly
+ * as Arrays.sort does. Implementations that sort a range are given
+ * [n / 4, n - n / 5) and must sort it and leave the rest of the array alone.
+ *
+ * The implementations are:
+ * - every algorithm of SortingAlgs.algorithms(). The ones that take quadratic
+ * time or overflow the stack on sorted input, e.g. bubble sort or the
+ * quicksorts that always pick the last element as the pivot, are only tested
+ * up to SLOW_MAX_N elements.
+ * - the range overloads of mergeSort, radixSort, timSort and
+ * dualPivotQuickSort2
+ * - the parallel sorts with a tiny cutoff on a pool of 4 threads, so even
+ * small inputs take the parallel paths
+ * - radixSort(long[]) and radixSort(float[]), whole and on a range, on the
+ * int inputs mapped to longs in order and to floats with NaN, -0.0f, the
+ * infinities and other special values mixed in
+ *
+ * Every implementation also sorts one input of FREQUENT_N elements, 3% of
+ * them zero and the rest random. Few enough samples repeat there for
+ * SortingAlgs.sort to pick dualPivotQuickSort2, which used to take quadratic
+ * time and overflow the stack on such input.
+ *
+ * Whether the bitonic sorts use the Vector API kernel depends on how the
+ * program is run; see vector/VectorBitonicKernel.java. With --vector=required
+ * the program fails unless they do, which tests/run_sorting_property_tests.sh
+ * passes in its second run, with the kernel compiled and
+ * jdk.incubator.vector added.
+ *
+ * Every failure is reported with the implementation, distribution and n, and
+ * the first wrong element, and the program exits with status 1 if there were
+ * any. An exception or a stack overflow counts as a failure.
+ *
+ * Compilation: javac -encoding UTF-8 -d <dir> *.java tests/PropertyTestSupport.java tests/SortingAlgsPropertyTest.java
+ *              (from src/columnsort, or run tests/run_sorting_property_tests.sh)
+ * Execution: java -cp <dir> SortingAlgsPropertyTest [--max-n=<n>] [--large=<count>]
+ *            [--max-large-n=<n>] [--frequent-n=<n>] [--vector=auto|required] [--seed=<seed>]
+ */
+public class SortingAlgsPropertyTest {
+
+  /** Largest n tested exhaustively unless --max-n is given */
+  private static final int DEFAULT_MAX_N = 2000;
+
+  /** Number of random n past the maximum tested unless --large is given */
+  private static final int DEFAULT_LARGE = 3;
+
+  /** Largest random n unless --max-large-n is given */
+  private static final int DEFAULT_MAX_LARGE_N = 1 << 20;
+
+  /** Size of the FREQUENT_VALUE input unless --frequent-n is given */
+  private static final int DEFAULT_FREQUENT_N = 1 << 20;
+
+  /** Distributions of the FREQUENT_N input */
+  private static final PropertyTestSupport.Distribution[] FREQUENT_DISTRIBUTIONS = {
+      PropertyTestSupport.Distribution.FREQUENT_VALUE };
+
+  /** Largest n tested for the algorithms in SLOW */
+  private static final int SLOW_MAX_N = 256;
+
+  /**
+   * Algorithms of SortingAlgs.algorithms() that take quadratic time on some
+   * distributions, and for the fixed pivot quicksorts recurse n deep
+   */
+  private static final Set<String> SLOW = Set.of("Insertion Sort", "Bubble Sort", "Selection Sort", "Quick Sort",
+      "Quick Sort with Insertion Sort", "Quick Sort with Selection Sort", "Three-Way Quick Sort",
+      "Introspective Sort");
+
+  /** Cutoff of the parallel sorts tested on PARALLEL_POOL */
+  private static final int TINY_CUTOFF = 16;
+
+  /** Pool of the parallel sorts tested with TINY_CUTOFF */
+  private static final ForkJoinPool PARALLEL_POOL = new ForkJoinPool(4);
+
+  /** Float values that sort specially, mixed into the radixSort(float[]) inputs */
+  private static final float[] SPECIAL_FLOATS = { Float.NaN, Float.intBitsToFloat(0x7f800001),
+      Float.intBitsToFloat(0xffc00000), -0.0f, 0.0f, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+      Float.MIN_VALUE, -Float.MIN_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, Float.MIN_NORMAL };
+
+  /**
+   * An implementation under test.
+   */
+  private static final class Implementation {
+    final String name;
+    final Consumer<int[]> sort;
+    final boolean range;
+    final int maxN;
+
+    /**
+     * @param name  the name in the report
+     * @param sort  sorts the whole array, or [rangeFrom(n), rangeTo(n)) if
+     *              range is set
+     * @param range whether only the range is sorted
+     * @param maxN  the largest n to test
+     */
+    Implementation(String name, Consumer<int[]> sort, boolean range, int maxN) {
+      this.name = name;
+      this.sort = sort;
+      this.range = range;
+      this.maxN = maxN;
+    }
+  }
+
+  /** Implementations under test */
+  private static final List<Implementation> IMPLEMENTATIONS = new ArrayList<>();
+
+  static {
+    for (Map.Entry<String, Consumer<int[]>> algorithm : SortingAlgs.algorithms().entrySet()) {
+      int maxN = SLOW.contains(algorithm.getKey()) ? SLOW_MAX_N : Integer.MAX_VALUE;
+      IMPLEMENTATIONS.add(new Implementation(algorithm.getKey(), algorithm.getValue(), false, maxN));
+    }
+
+    IMPLEMENTATIONS.add(new Implementation("mergeSort range",
+        array -> SortingAlgs.mergeSort(array, rangeFrom(array.length), rangeTo(array.length)), true, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("radixSort range",
+        array -> SortingAlgs.radixSort(array, rangeFrom(array.length), rangeTo(array.length)), true, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("timSort range",
+        array -> SortingAlgs.timSort(array, rangeFrom(array.length), rangeTo(array.length)), true, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("dualPivotQuickSort2 range",
+        array -> SortingAlgs.dualPivotQuickSort2(array, rangeFrom(array.length), rangeTo(array.length)), true,
+        Integer.MAX_VALUE));
+
+    IMPLEMENTATIONS.add(new Implementation("parallelMergeSort tiny cutoff",
+        array -> SortingAlgs.parallelMergeSort(array, PARALLEL_POOL, TINY_CUTOFF), false, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("parallelThreeWayQuickSort tiny cutoff",
+        array -> SortingAlgs.parallelThreeWayQuickSort(array, PARALLEL_POOL, TINY_CUTOFF), false, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("parallelRadixSort tiny cutoff",
+        array -> SortingAlgs.parallelRadixSort(array, PARALLEL_POOL, TINY_CUTOFF), false, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("parallelBucketSort tiny cutoff",
+        array -> SortingAlgs.parallelBucketSort(array, PARALLEL_POOL, TINY_CUTOFF), false, Integer.MAX_VALUE));
+    IMPLEMENTATIONS.add(new Implementation("parallelBitonicSort tiny cutoff",
+        array -> SortingAlgs.parallelBitonicSort(array, PARALLEL_POOL, TINY_CUTOFF), false, Integer.MAX_VALUE));
+  }
+
+  /** Names of the radixSort(long[]) and radixSort(float[]) checks in the report */
+  private static final String[] WIDE_RADIX = { "radixSort(long[])", "radixSort(long[]) range", "radixSort(float[])",
+      "radixSort(float[]) range" };
+
+  private static int maxN = DEFAULT_MAX_N;
+  private static int large = DEFAULT_LARGE;
+  private static int maxLargeN = DEFAULT_MAX_LARGE_N;
+  private static int frequentN = DEFAULT_FREQUENT_N;
+  private static long seed = 345;
+
+  private static final String USAGE = "Usage: java SortingAlgsPropertyTest [--max-n=<n>] [--large=<count>]"
+      + " [--max-large-n=<n>] [--frequent-n=<n>] [--vector=auto|required] [--seed=<seed>]";
+
+  private static final PropertyTestSupport.Report report = new PropertyTestSupport.Report();
+
+  public static void main(String[] args) {
+    parseOptions(args);
+    for (Implementation implementation : IMPLEMENTATIONS) {
+      report.add(implementation.name);
+    }
+    for (String name : WIDE_RADIX) {
+      report.add(name);
+    }
+
+    System.out.println("Sorting n = 0.." + maxN + " (seed " + seed + ")");
+    Random random = new Random(seed);
+    for (int n = 0; n <= maxN; n++) {
+      test(n, PropertyTestSupport.Distribution.values(), random);
+    }
+    for (int i = 0; i < large; i++) {
+      int n = maxN + 1 + random.nextInt(Math.max(1, maxLargeN - maxN));
+      System.out.println("Sorting random large n = " + n);
+      test(n, PropertyTestSupport.Distribution.values(), random);
+    }
+    if (frequentN > 0) {
+      System.out.println("Sorting a frequent value, n = " + frequentN);
+      test(frequentN, FREQUENT_DISTRIBUTIONS, random);
+    }
+
+    report.exit();
+  }
+
+  /** First index of the range sorted by range implementations */
+  private static int rangeFrom(int n) {
+    return n / 4;
+  }
+
+  /** Index past the range sorted by range implementations */
+  private static int rangeTo(int n) {
+    return n - n / 5;
+  }
+
+  /**
+   * Sorts each of the given distributions of size n with every implementation,
+   * checking the result.
+   */
+  private static void test(int n, PropertyTestSupport.Distribution[] distributions, Random random) {
+    for (PropertyTestSupport.Distribution distribution : distributions) {
+      int[] input = distribution.generate(n, random);
+      int[] expected = input.clone();
+      Arrays.sort(expected);
+      int[] expectedRange = input.clone();
+      Arrays.sort(expectedRange, rangeFrom(n), rangeTo(n));
+
+      for (Implementation implementation : IMPLEMENTATIONS) {
+        if (n > implementation.maxN) {
+          continue;
+        }
+        int[] actual = input.clone();
+        try {
+          implementation.sort.accept(actual);
+        } catch (RuntimeException | StackOverflowError e) {
+          report.fail(implementation.name, distribution + " n = " + n + ": threw " + e);
+          continue;
+        }
+        report.check(implementation.name, distribution + " n = " + n, implementation.range ? expectedRange : expected,
+            actual);
+      }
+
+      testLongRadix(distribution, input);
+      testFloatRadix(distribution, input);
+    }
+  }
+
+  /**
+   * Checks radixSort(long[]) on the input mapped to longs in order, with
+   * Integer.MIN_VALUE and MAX_VALUE mapped to Long.MIN_VALUE and MAX_VALUE and
+   * every other value v to v * 2^32 plus the low 32 bits of v.
+   */
+  private static void testLongRadix(PropertyTestSupport.Distribution distribution, int[] input) {
+    int n = input.length;
+    long[] wide = new long[n];
+    for (int i = 0; i < n; i++) {
+      int v = input[i];
+      wide[i] = v == Integer.MIN_VALUE ? Long.MIN_VALUE
+          : v == Integer.MAX_VALUE ? Long.MAX_VALUE : (long) v << 32 | (v & 0xFFFFFFFFL);
+    }
+
+    long[] expected = wide.clone();
+    Arrays.sort(expected);
+    long[] actual = wide.clone();
+    SortingAlgs.radixSort(actual);
+    checkWide(WIDE_RADIX[0], distribution, n, Arrays.mismatch(expected, actual));
+
+    expected = wide.clone();
+    Arrays.sort(expected, rangeFrom(n), rangeTo(n));
+    actual = wide.clone();
+    SortingAlgs.radixSort(actual, rangeFrom(n), rangeTo(n), new long[rangeTo(n) - rangeFrom(n)]);
+    checkWide(WIDE_RADIX[1], distribution, n, Arrays.mismatch(expected, actual));
+  }
+
+  /**
+   * Checks radixSort(float[]) on the input mapped to floats: every value v
+   * divisible by 4 to one of SPECIAL_FLOATS, and any other to the float with
+   * the bits of v. Arrays.sort puts -0.0f before 0.0f and every NaN last.
+   */
+  private static void testFloatRadix(PropertyTestSupport.Distribution distribution, int[] input) {
+    int n = input.length;
+    float[] floats = new float[n];
+    for (int i = 0; i < n; i++) {
+      int v = input[i];
+      floats[i] = v % 4 == 0 ? SPECIAL_FLOATS[Math.floorMod(v / 4, SPECIAL_FLOATS.length)] : Float.intBitsToFloat(v);
+    }
+
+    float[] expected = floats.clone();
+    Arrays.sort(expected);
+    float[] actual = floats.clone();
+    SortingAlgs.radixSort(actual);
+    checkWide(WIDE_RADIX[2], distribution, n, Arrays.mismatch(expected, actual));
+
+    expected = floats.clone();
+    Arrays.sort(expected, rangeFrom(n), rangeTo(n));
+    actual = floats.clone();
+    SortingAlgs.radixSort(actual, rangeFrom(n), rangeTo(n), new float[rangeTo(n) - rangeFrom(n)]);
+    checkWide(WIDE_RADIX[3], distribution, n, Arrays.mismatch(expected, actual));
+  }
+
+  /**
+   * Counts a failure of a radixSort(long[]) or radixSort(float[]) check if
+   * its result mismatched the expected one.
+   */
+  private static void checkWide(String name, PropertyTestSupport.Distribution distribution, int n, int mismatch) {
+    if (mismatch >= 0) {
+      report.fail(name, distribution + " n = " + n + ": first wrong element at index " + mismatch);
+    }
+  }
+
+  /**
+   * Parses the command line options and checks --vector. Exits the program
+   * with a usage message if they are invalid.
+   */
+  private static void parseOptions(String[] args) {
+    PropertyTestSupport.Options options = new PropertyTestSupport.Options(args, USAGE, "max-n", "large",
+        "max-large-n", "frequent-n", "vector", "seed");
+    maxN = options.getInt("max-n", DEFAULT_MAX_N);
+    large = options.getInt("large", DEFAULT_LARGE);
+    maxLargeN = options.getInt("max-large-n", DEFAULT_MAX_LARGE_N);
+    frequentN = options.getInt("frequent-n", DEFAULT_FREQUENT_N);
+    seed = options.getLong("seed", seed);
+    if (maxN < 0 || large < 0 || maxLargeN < maxN || frequentN < 0) {
+      options.error("Sizes must not be negative, --frequent-n may be 0 to skip the frequent value input,"
+          + " and --max-large-n must be at least --max-n");
+    }
+    PropertyTestSupport.checkVectorKernel("VectorBitonicKernel", options, report);
+  }
+}
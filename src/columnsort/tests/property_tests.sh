@@ -0,0 +1,34 @@
+#!/bin/bash
+
+# Runs one of the property tests, passing any further arguments through, e.g.
+#   ./property_tests.sh ColumnsortPropertyTest --max-n=500
+# Used by run_property_tests.sh and run_sorting_property_tests.sh, and works
+# from any directory.
+#
+# The test runs twice: first without the Vector API, which checks the scalar
+# fallbacks, then with the kernels in vector/ compiled and the
+# jdk.incubator.vector module added, with --vector=required so the second run
+# fails if they are not actually used. The second run takes the options in
+# VECTOR_ARGS first, so callers can give it smaller sizes; any arguments
+# given here still override them. Set VECTOR=0 to skip it.
+
+cd "$(dirname "$0")/.." || exit 1
+test=$1
+shift
+
+# Compile into a temporary directory so no class files are left in the sources
+build=$(mktemp -d)
+trap 'rm -rf "$build"' EXIT
+
+javac -encoding UTF-8 -d "$build" *.java tests/PropertyTestSupport.java "tests/$test.java" || exit 1
+
+java -cp "$build" "$test" "$@"
+status=$?
+
+if [ "${VECTOR:-1}" != 0 ]; then
+  echo "Running $test with the Vector API kernels"
+  javac --add-modules jdk.incubator.vector -encoding UTF-8 -cp "$build" -d "$build" vector/*.java || exit 1
+  java --add-modules jdk.incubator.vector -cp "$build" "$test" --vector=required $VECTOR_ARGS "$@" || status=1
+fi
+
+exit $status
@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Runs ColumnsortPropertyTest, passing any arguments through, e.g.
+#   ./run_property_tests.sh --max-n=5000 --csv=throughput.csv
+# Prints every failure and a throughput table, and exits with status 1 if any
+# implementation sorted an input differently from Arrays.sort. The second run,
+# with the Vector API kernels, uses smaller sizes and no spawned workers, since
+# only the vector kernels differ from the first.
+
+VECTOR_ARGS="--max-n=3000 --large=1 --max-large-n=300000 --spawn=0" \
+  "$(dirname "$0")/property_tests.sh" ColumnsortPropertyTest "$@"
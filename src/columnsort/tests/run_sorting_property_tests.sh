@@ -0,0 +1,11 @@
+#!/bin/bash
+
+# Runs SortingAlgsPropertyTest, passing any arguments through, e.g.
+#   ./run_sorting_property_tests.sh --max-n=500 --large=1
+# Prints every failure and exits with status 1 if any algorithm sorted an
+# input differently from Arrays.sort. The second run, with the Vector API
+# bitonic kernel, uses smaller sizes, since only the bitonic sorts differ from
+# the first.
+
+VECTOR_ARGS="--max-n=1000 --large=1 --max-large-n=200000 --frequent-n=100000" \
+  "$(dirname "$0")/property_tests.sh" SortingAlgsPropertyTest "$@"
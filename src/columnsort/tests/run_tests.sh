@@ -18,7 +18,7 @@ do
     echo "Running $test"
   fi
 
-  java Prog3 $test > output.txt
+  java Prog3 $test --output=- > output.txt
 
   # Only print the header if not in failure-only mode
   if ! $PRINT_ONLY_FAILURES; then
@@ -0,0 +1,77 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorBitonicKernel does the compare-exchanges of SortingAlgs.bitonicSort
+ * and SortingAlgs.parallelBitonicSort with the incubating Vector API
+ * (jdk.incubator.vector). A run of pairs (i + t, i + t + j) is loaded as two
+ * vectors at a time, one from each half, and stored back as their lane-wise
+ * min and max, swapped for descending runs. The two halves of a run never
+ * overlap, since a run has at most j pairs.
+ *
+ * Runs shorter than a vector, i.e. the stages with j below the number of
+ * lanes, and the tail of every run, are done one pair at a time.
+ *
+ * This file lives apart from the other sources because it only compiles with
+ * the incubator module added. From src/columnsort:
+ * Compilation: javac --add-modules jdk.incubator.vector -d . vector/VectorBitonicKernel.java
+ * Execution: java --add-modules jdk.incubator.vector Prog3Testing <filename>, or any other
+ * program calling the bitonic sorts
+ *
+ * The rest of the program never refers to this class directly. SortingAlgs
+ * loads it by name and falls back to its scalar kernel when it has not been
+ * compiled, the module is missing at run time, or the CPU has no useful
+ * vector width.
+ */
+public final class VectorBitonicKernel implements SortingAlgs.BitonicKernel {
+
+  /** Widest vector shape the CPU supports well */
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  /** Number of int lanes per vector */
+  private static final int LANES = SPECIES.length();
+
+  /** The kernel, loaded by SortingAlgs */
+  public static final VectorBitonicKernel INSTANCE = new VectorBitonicKernel();
+
+  private VectorBitonicKernel() {
+  }
+
+  /**
+   * Returns whether vectors are wide enough for the kernel to pay off, i.e.
+   * hold at least 4 ints.
+   */
+  public static boolean isSupported() {
+    return LANES >= 4;
+  }
+
+  @Override
+  public void compareExchange(int[] array, int i, int j, int count, boolean ascending) {
+    // The minimum goes to the first half when ascending and the second otherwise
+    int minOffset = ascending ? 0 : j;
+    int maxOffset = j - minOffset;
+    int t = i;
+    int bound = i + SPECIES.loopBound(count);
+    for (; t < bound; t += LANES) {
+      IntVector x = IntVector.fromArray(SPECIES, array, t);
+      IntVector y = IntVector.fromArray(SPECIES, array, t + j);
+      x.min(y).intoArray(array, t + minOffset);
+      x.max(y).intoArray(array, t + maxOffset);
+    }
+    if (ascending) {
+      for (; t < i + count; t++) {
+        int x = array[t];
+        int y = array[t + j];
+        array[t] = Math.min(x, y);
+        array[t + j] = Math.max(x, y);
+      }
+    } else {
+      for (; t < i + count; t++) {
+        int x = array[t];
+        int y = array[t + j];
+        array[t] = Math.max(x, y);
+        array[t + j] = Math.min(x, y);
+      }
+    }
+  }
+}
@@ -0,0 +1,207 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorColumnSorter is a column kernel built on the incubating Vector API
+ * (jdk.incubator.vector). It sorts each column in two phases:
+ * 1. The column is cut into blocks of RUN vectors. The vectors of a block are
+ * sorted against each other with an 8-input sorting network of lane-wise min
+ * and max operations, which leaves each lane holding a sorted run of RUN
+ * elements. The runs are scattered into a scratch array so each is contiguous.
+ * 2. The runs, plus the insertion sorted leftover past the last full block,
+ * are merged bottom-up with a branch-free merge, ping-ponging between the
+ * scratch array and the column.
+ *
+ * Phase 1 replaces the compare-and-branch inner loop of insertion sort with
+ * 19 min/max pairs per block of RUN * lanes elements, e.g. 128 ints on a CPU
+ * with 512-bit vectors. The scratch array is taken from the ScratchPool of the
+ * calling thread.
+ *
+ * This file lives apart from the other sources because it only compiles with
+ * the incubator module added. From src/columnsort:
+ * Compilation: javac --add-modules jdk.incubator.vector -d . vector/VectorColumnSorter.java
+ * Execution: java --add-modules jdk.incubator.vector Prog3 <filename> --sorter=vector
+ *
+ * The rest of the program never refers to this class directly. ColumnSorter.vector()
+ * loads it by name and falls back to ColumnSorter.ADAPTIVE when it has not
+ * been compiled, the module is missing at run time, or the CPU has no
+ * useful vector width.
+ */
+public final class VectorColumnSorter implements ColumnSorter {
+
+  /** Widest vector shape the CPU supports well */
+  private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+  /** Number of int lanes per vector */
+  private static final int LANES = SPECIES.length();
+
+  /** Number of vectors sorted against each other, the size of the network */
+  private static final int RUN = 8;
+
+  /** Number of elements sorted by the network at a time */
+  private static final int BLOCK = RUN * LANES;
+
+  /** Columns shorter than this are left to ColumnSorter.ADAPTIVE */
+  private static final int MIN_LENGTH = 2 * BLOCK;
+
+  /** Scatter offsets that make the run held by lane j contiguous */
+  private static final int[] RUN_STARTS = new int[LANES];
+
+  static {
+    for (int j = 0; j < LANES; j++) {
+      RUN_STARTS[j] = j * RUN;
+    }
+  }
+
+  /** The kernel, loaded by ColumnSorter.vector() */
+  public static final VectorColumnSorter INSTANCE = new VectorColumnSorter();
+
+  private VectorColumnSorter() {
+  }
+
+  /**
+   * Returns whether vectors are wide enough for the kernel to pay off, i.e.
+   * hold at least 4 ints.
+   */
+  public static boolean isSupported() {
+    return LANES >= 4;
+  }
+
+  @Override
+  public void sort(int[] array, int from, int to) {
+    int length = to - from;
+    if (length < MIN_LENGTH) {
+      ColumnSorter.ADAPTIVE.sort(array, from, to);
+      return;
+    }
+
+    ScratchPool pool = ScratchPool.local();
+    int[] scratch = pool.acquire(length);
+    try {
+      // Phase 1: sort each full block into runs of RUN elements in the scratch
+      int full = length / BLOCK * BLOCK;
+      for (int b = 0; b < full; b += BLOCK) {
+        sortBlock(array, from + b, scratch, b);
+      }
+      System.arraycopy(array, from + full, scratch, full, length - full);
+      ColumnSorter.INSERTION.sort(scratch, full, length);
+
+      // Phase 2: merge the runs of the full blocks bottom-up
+      int[] src = scratch;
+      int srcOffset = 0;
+      int[] dst = array;
+      int dstOffset = from;
+      for (int width = RUN; width < full; width *= 2) {
+        for (int i = 0; i < full; i += 2 * width) {
+          int mid = Math.min(i + width, full);
+          int end = Math.min(i + 2 * width, full);
+          merge(src, srcOffset + i, srcOffset + mid, srcOffset + end, dst, dstOffset + i);
+        }
+        int[] swap = src;
+        src = dst;
+        dst = swap;
+        int swapOffset = srcOffset;
+        srcOffset = dstOffset;
+        dstOffset = swapOffset;
+      }
+
+      // Merge in the leftover, which is still in the scratch
+      if (src == scratch) {
+        merge(scratch, 0, full, length, array, from);
+      } else {
+        mergeBackward(array, from, from + full, scratch, full, length);
+      }
+    } finally {
+      pool.release(scratch);
+    }
+  }
+
+  /**
+   * Sorts the RUN vectors starting at offset against each other, so lane j of
+   * the block holds a sorted run, and scatters run j to [out + j * RUN,
+   * out + (j + 1) * RUN) of the destination.
+   */
+  private static void sortBlock(int[] array, int offset, int[] dst, int out) {
+    IntVector v0 = IntVector.fromArray(SPECIES, array, offset);
+    IntVector v1 = IntVector.fromArray(SPECIES, array, offset + LANES);
+    IntVector v2 = IntVector.fromArray(SPECIES, array, offset + 2 * LANES);
+    IntVector v3 = IntVector.fromArray(SPECIES, array, offset + 3 * LANES);
+    IntVector v4 = IntVector.fromArray(SPECIES, array, offset + 4 * LANES);
+    IntVector v5 = IntVector.fromArray(SPECIES, array, offset + 5 * LANES);
+    IntVector v6 = IntVector.fromArray(SPECIES, array, offset + 6 * LANES);
+    IntVector v7 = IntVector.fromArray(SPECIES, array, offset + 7 * LANES);
+    IntVector t;
+
+    // Optimal 8-input network, 19 comparators in 6 layers
+    t = v0.min(v2); v2 = v0.max(v2); v0 = t;
+    t = v1.min(v3); v3 = v1.max(v3); v1 = t;
+    t = v4.min(v6); v6 = v4.max(v6); v4 = t;
+    t = v5.min(v7); v7 = v5.max(v7); v5 = t;
+
+    t = v0.min(v4); v4 = v0.max(v4); v0 = t;
+    t = v1.min(v5); v5 = v1.max(v5); v1 = t;
+    t = v2.min(v6); v6 = v2.max(v6); v2 = t;
+    t = v3.min(v7); v7 = v3.max(v7); v3 = t;
+
+    t = v0.min(v1); v1 = v0.max(v1); v0 = t;
+    t = v2.min(v3); v3 = v2.max(v3); v2 = t;
+    t = v4.min(v5); v5 = v4.max(v5); v4 = t;
+    t = v6.min(v7); v7 = v6.max(v7); v6 = t;
+
+    t = v2.min(v4); v4 = v2.max(v4); v2 = t;
+    t = v3.min(v5); v5 = v3.max(v5); v3 = t;
+
+    t = v1.min(v4); v4 = v1.max(v4); v1 = t;
+    t = v3.min(v6); v6 = v3.max(v6); v3 = t;
+
+    t = v1.min(v2); v2 = v1.max(v2); v1 = t;
+    t = v3.min(v4); v4 = v3.max(v4); v3 = t;
+    t = v5.min(v6); v6 = v5.max(v6); v5 = t;
+
+    // Element i of run j is lane j of vector i
+    v0.intoArray(dst, out, RUN_STARTS, 0);
+    v1.intoArray(dst, out + 1, RUN_STARTS, 0);
+    v2.intoArray(dst, out + 2, RUN_STARTS, 0);
+    v3.intoArray(dst, out + 3, RUN_STARTS, 0);
+    v4.intoArray(dst, out + 4, RUN_STARTS, 0);
+    v5.intoArray(dst, out + 5, RUN_STARTS, 0);
+    v6.intoArray(dst, out + 6, RUN_STARTS, 0);
+    v7.intoArray(dst, out + 7, RUN_STARTS, 0);
+  }
+
+  /**
+   * Merges the sorted ranges [lo, mid) and [mid, hi) of src into dst starting
+   * at out, picking each element without a branch on the comparison.
+   */
+  private static void merge(int[] src, int lo, int mid, int hi, int[] dst, int out) {
+    int i = lo;
+    int j = mid;
+    while (i < mid && j < hi) {
+      int a = src[i];
+      int b = src[j];
+      int takeRight = b < a ? 1 : 0;
+      dst[out++] = takeRight == 1 ? b : a;
+      j += takeRight;
+      i += 1 - takeRight;
+    }
+    System.arraycopy(src, i, dst, out, mid - i);
+    out += mid - i;
+    System.arraycopy(src, j, dst, out, hi - j);
+  }
+
+  /**
+   * Merges the sorted range [from, mid) of the array with the sorted range
+   * [lo, hi) of the tail array into [from, mid + hi - lo) of the array, from
+   * the largest element down. Every write position is past the unread part
+   * of the array, so this can be done in place.
+   */
+  private static void mergeBackward(int[] array, int from, int mid, int[] tail, int lo, int hi) {
+    int i = mid - 1;
+    int j = hi - 1;
+    int out = mid + hi - lo - 1;
+    while (i >= from && j >= lo) {
+      array[out--] = array[i] > tail[j] ? array[i--] : tail[j--];
+    }
+    System.arraycopy(tail, lo, array, from, j - lo + 1);
+  }
+}